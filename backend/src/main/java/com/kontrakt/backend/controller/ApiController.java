@@ -1,16 +1,30 @@
 package com.kontrakt.backend.controller;
 
 import com.kontrakt.backend.dto.LoginRequest;
+import com.kontrakt.backend.model.User;
+import com.kontrakt.backend.repository.UserRepository;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final UserRepository users;
+
+    public ApiController(UserRepository users) {
+        this.users = users;
+    }
+
     // POST /api/login
     @PostMapping("/login")
     public ResponseEntity<Map<String, Object>> login(@RequestBody Map<String, String> credentials) {
@@ -34,40 +48,93 @@ public class ApiController {
         }
     }
 
-    // GET /api/users/{id}
+    // GET /api/users?page=0&size=20
+    @GetMapping("/users")
+    public ResponseEntity<Map<String, Object>> listUsers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        int safePage = Math.max(page, 0);
+        int safeSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("page", safePage);
+        response.put("size", safeSize);
+        response.put("total", users.count());
+        response.put("users", users.findPage(safePage, safeSize));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response);
+    }
+
+    // GET /api/users/{id} (conditional: If-None-Match -> 304 while the user is unchanged)
     @GetMapping("/users/{id}")
-    public ResponseEntity<Map<String, Object>> getUser(@PathVariable int id) {
-        // Simulate non-existent users for IDs that aren't known.
-        // For demo/tests: treat id=9999 as non-existent.
-        if (id == 9999) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "User not found");
-            return ResponseEntity.status(404)
-                    .header("Content-Type", "application/json")
-                    .body(error);
+    public ResponseEntity<?> getUser(@PathVariable int id) {
+        // Hot path: serve the cached JSON bytes instead of re-serializing the user
+        Optional<UserRepository.UserJson> json = users.findJsonById(id);
+        if (json.isEmpty()) {
+            return userNotFound();
         }
 
-        Map<String, Object> user = new HashMap<>();
-        user.put("id", id);
-        user.put("username", "user" + id);
-        user.put("email", "user" + id + "@example.com");
-        user.put("role", "USER");
-
+        // Clients may keep a copy but must revalidate it on every use. Spring
+        // answers a matching If-None-Match with a bodiless 304 from the ETag here
         return ResponseEntity.ok()
-                .header("Content-Type", "application/json")
+                .eTag(json.get().etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json.get().bytes());
+    }
+
+    // POST /api/users
+    @PostMapping("/users")
+    public ResponseEntity<User> createUser(@RequestBody Map<String, String> fields) {
+        User user = users.create(fields.get("username"), fields.get("email"), fields.get("role"));
+        return ResponseEntity.status(201)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(user);
     }
 
+    // POST /api/users/bulk
+    @PostMapping("/users/bulk")
+    public ResponseEntity<Map<String, Object>> createUsers(@RequestBody List<User> templates) {
+        List<User> created = users.createAll(templates);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("created", created.size());
+        response.put("ids", created.stream().map(User::id).toList());
+
+        return ResponseEntity.status(201)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response);
+    }
+
+    // POST /api/users/bulk-delete
+    @PostMapping("/users/bulk-delete")
+    public ResponseEntity<Map<String, Object>> deleteUsers(@RequestBody List<Integer> ids) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("requested", ids.size());
+        response.put("deleted", users.deleteAll(ids));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response);
+    }
+
     // PUT /api/users/{id}
     @PutMapping("/users/{id}")
     public ResponseEntity<Map<String, Object>> updateUser(
             @PathVariable int id,
             @RequestBody Map<String, String> updates) {
 
+        Optional<User> updated = users.updateRole(id, updates.get("role"));
+        if (updated.isEmpty()) {
+            return userNotFound();
+        }
+
         Map<String, Object> response = new HashMap<>();
         response.put("id", id);
         response.put("updated", true);
-        response.put("role", updates.get("role"));
+        response.put("role", updated.get().role());
         response.put("message", "User updated successfully");
 
         return ResponseEntity.ok()
@@ -79,9 +146,11 @@ public class ApiController {
     // DELETE /api/users/{id}
     @DeleteMapping("/users/{id}")
     public ResponseEntity<Map<String, Object>> deleteUser(@PathVariable int id) {
-        Map<String, Object> response = new HashMap<>();
+        if (!users.delete(id)) {
+            return userNotFound();
+        }
 
-        // TODO: Implement user deletion logic
+        Map<String, Object> response = new HashMap<>();
         response.put("id", id);
         response.put("deleted", true);
         response.put("message", "User deleted successfully");
@@ -91,4 +160,12 @@ public class ApiController {
                 .body(response);
     }
 
+    private ResponseEntity<Map<String, Object>> userNotFound() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "User not found");
+        return ResponseEntity.status(404)
+                .header("Content-Type", "application/json")
+                .body(error);
+    }
+
 }
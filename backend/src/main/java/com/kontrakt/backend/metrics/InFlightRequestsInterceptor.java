@@ -0,0 +1,67 @@
+package com.kontrakt.backend.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks requests currently inside a handler, per method and URI template
+ * (/api/users/{id}, not /api/users/42), as the
+ * kontrakt_http_server_inflight gauge.
+ *
+ * Counts and latency histograms come from Spring's own
+ * http.server.requests timer; this only adds the in-flight view, i.e. how
+ * many requests the handlers are working on concurrently. It can't show
+ * queueing: preHandle runs after the connector accepted the request, a
+ * worker thread picked it up and the dispatcher mapped it, so requests
+ * waiting in the accept backlog or for a thread are never counted. That
+ * time only shows up as the gap between client-side latency and
+ * http.server.requests.
+ */
+@Component
+public class InFlightRequestsInterceptor implements HandlerInterceptor {
+
+    private static final String GAUGE_ATTRIBUTE = InFlightRequestsInterceptor.class.getName() + ".gauge";
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, AtomicInteger> gauges = new ConcurrentHashMap<>();
+
+    public InFlightRequestsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String method = request.getMethod();
+
+        AtomicInteger inFlight = gauges.computeIfAbsent(method + " " + uri, key -> {
+            AtomicInteger value = new AtomicInteger();
+            Gauge.builder("kontrakt.http.server.inflight", value, AtomicInteger::get)
+                    .description("Requests currently being handled")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .register(registry);
+            return value;
+        });
+        inFlight.incrementAndGet();
+        request.setAttribute(GAUGE_ATTRIBUTE, inFlight);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object inFlight = request.getAttribute(GAUGE_ATTRIBUTE);
+        if (inFlight instanceof AtomicInteger counter) {
+            counter.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.kontrakt.backend.metrics;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final InFlightRequestsInterceptor inFlightRequests;
+
+    public MetricsConfig(InFlightRequestsInterceptor inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(inFlightRequests)
+                .addPathPatterns("/api/login", "/api/users/**");
+    }
+}
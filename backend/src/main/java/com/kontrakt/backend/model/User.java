@@ -0,0 +1,9 @@
+package com.kontrakt.backend.model;
+
+// Immutable user snapshot - updates replace the whole record in the repository
+public record User(int id, String username, String email, String role) {
+
+    public User withRole(String newRole) {
+        return new User(id, username, email, newRole);
+    }
+}
@@ -0,0 +1,32 @@
+package com.kontrakt.backend.repository;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * POST /actuator/reset puts the user store back into its seeded state.
+ *
+ * Lives on the management port (local-only, see application.properties)
+ * rather than under /api, so it is neither part of the API the specs test
+ * nor reachable from outside the machine. The Makefile calls it before
+ * every run of the suite.
+ */
+@Component
+@Endpoint(id = "reset")
+public class ResetEndpoint {
+
+    private final UserRepository users;
+
+    public ResetEndpoint(UserRepository users) {
+        this.users = users;
+    }
+
+    @WriteOperation
+    public Map<String, Object> reset() {
+        users.reset();
+        return Map.of("reset", true, "users", users.count());
+    }
+}
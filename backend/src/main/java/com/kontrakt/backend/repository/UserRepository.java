@@ -0,0 +1,139 @@
+package com.kontrakt.backend.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kontrakt.backend.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory user store for load and concurrency runs.
+ *
+ * Backed by a ConcurrentHashMap: reads are lock-free and every write goes
+ * through compute/remove, so updates to the same user are atomic while
+ * writes to different users only contend on their own hash bin. Each entry
+ * also caches its serialized JSON and the ETag of that JSON, so the hot GET
+ * path serializes and hashes a user at most once per version.
+ *
+ * Writes stick around until {@link #reset()} (POST /actuator/reset, see
+ * ResetEndpoint), which the Makefile calls before every suite run.
+ */
+@Repository
+public class UserRepository {
+
+    private final ConcurrentHashMap<Integer, Entry> users = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ObjectMapper objectMapper;
+    private final int seedCount;
+
+    public UserRepository(ObjectMapper objectMapper,
+                          @Value("${kontrakt.users.seed:100}") int seedCount) {
+        this.objectMapper = objectMapper;
+        this.seedCount = seedCount;
+        reset();
+    }
+
+    // Back to the seeded user1..userN, so the example .test files can be run again and again
+    public synchronized void reset() {
+        users.clear();
+        for (int id = 1; id <= seedCount; id++) {
+            users.put(id, new Entry(new User(id, "user" + id, "user" + id + "@example.com", "USER")));
+        }
+        nextId.set(seedCount + 1);
+    }
+
+    public Optional<User> findById(int id) {
+        Entry entry = users.get(id);
+        return entry == null ? Optional.empty() : Optional.of(entry.user);
+    }
+
+    // Serialized form of the current version of the user, computed once per version
+    public Optional<UserJson> findJsonById(int id) {
+        Entry entry = users.get(id);
+        return entry == null ? Optional.empty() : Optional.of(entry.json(objectMapper));
+    }
+
+    // Users ordered by id, `size` per page
+    public List<User> findPage(int page, int size) {
+        return users.keySet().stream()
+                .sorted()
+                .skip((long) page * size)
+                .limit(size)
+                .map(users::get)
+                .filter(entry -> entry != null) // removed since the key snapshot
+                .map(entry -> entry.user)
+                .toList();
+    }
+
+    public int count() {
+        return users.size();
+    }
+
+    public User create(String username, String email, String role) {
+        int id = nextId.getAndIncrement();
+        User user = new User(id, username, email, role != null ? role : "USER");
+        users.put(id, new Entry(user));
+        return user;
+    }
+
+    public List<User> createAll(Collection<User> templates) {
+        List<User> created = new ArrayList<>(templates.size());
+        for (User template : templates) {
+            created.add(create(template.username(), template.email(), template.role()));
+        }
+        return created;
+    }
+
+    // Atomically replaces the user's role; empty if the user does not exist
+    public Optional<User> updateRole(int id, String role) {
+        Entry updated = users.computeIfPresent(id, (key, entry) -> new Entry(entry.user.withRole(role)));
+        return updated == null ? Optional.empty() : Optional.of(updated.user);
+    }
+
+    public boolean delete(int id) {
+        return users.remove(id) != null;
+    }
+
+    public int deleteAll(Collection<Integer> ids) {
+        int deleted = 0;
+        for (Integer id : ids) {
+            if (id != null && delete(id)) deleted++;
+        }
+        return deleted;
+    }
+
+    /** A user's JSON and its strong ETag (quoted MD5 of the bytes). */
+    public record UserJson(byte[] bytes, String etag) {}
+
+    private static final class Entry {
+        final User user;
+        // Racing readers may both serialize; either result is identical
+        private volatile UserJson json;
+
+        Entry(User user) {
+            this.user = user;
+        }
+
+        UserJson json(ObjectMapper mapper) {
+            UserJson cached = json;
+            if (cached == null) {
+                try {
+                    byte[] bytes = mapper.writeValueAsBytes(user);
+                    cached = new UserJson(bytes, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"");
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Could not serialize user " + user.id(), e);
+                }
+                json = cached;
+            }
+            return cached;
+        }
+    }
+}
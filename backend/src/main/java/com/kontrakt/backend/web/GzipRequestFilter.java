@@ -0,0 +1,132 @@
+package com.kontrakt.backend.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Accepts gzip-compressed request bodies (Content-Encoding: gzip).
+ *
+ * Spring only compresses responses (server.compression.*); this is the other
+ * direction. The body is inflated as the handler reads it, and the request
+ * is presented to everything downstream as a plain, unencoded one.
+ *
+ * Only blocking reads are supported: inflating needs however many raw bytes
+ * the next compressed block takes, which a non-blocking ReadListener can't
+ * wait for. So the filter is scoped to the /api controllers, which read
+ * their bodies blocking through @RequestBody. A gzipped body sent anywhere
+ * else goes through untouched, and an async reader of a gzipped /api body
+ * gets an IllegalStateException, as the Servlet spec requires for a stream
+ * that can't go non-blocking.
+ */
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/")
+                || !"gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(new GunzippedRequest(request), response);
+    }
+
+    private static final class GunzippedRequest extends HttpServletRequestWrapper {
+        private ServletInputStream body;
+
+        GunzippedRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (body == null) {
+                GZIPInputStream gzip = new GZIPInputStream(super.getInputStream());
+                body = new ServletInputStream() {
+                    private boolean finished;
+
+                    @Override
+                    public int read() throws IOException {
+                        int b = gzip.read();
+                        if (b == -1) finished = true;
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int off, int len) throws IOException {
+                        int n = gzip.read(buffer, off, len);
+                        if (n == -1) finished = true;
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return finished;
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        throw new IllegalStateException("gzip request bodies can only be read blocking");
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? encoding : StandardCharsets.UTF_8.name()));
+        }
+
+        // The decoded length isn't known up front
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if ("Content-Encoding".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if ("Content-Encoding".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getHeaders(name);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.kontrakt.backend.web;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves every request on its own virtual thread when the JVM has them
+ * (Java 21+), and on Tomcat's regular worker pool otherwise.
+ *
+ * The build targets Java 17, so spring.threads.virtual.enabled would never
+ * kick in; the executor is looked up reflectively instead, the same way the
+ * generated stub server does it.
+ */
+@Configuration
+public class VirtualThreadsConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutor() {
+        return handler -> {
+            ExecutorService executor = virtualThreadPerTaskExecutor();
+            if (executor != null) {
+                handler.setExecutor(executor);
+                log.info("Serving requests on virtual threads");
+            }
+        };
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), or null before Java 21
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.kontrakt.backend.controller;
+
+import com.kontrakt.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional GETs of a user: a strong ETag per version of the user,
+ * 304 while it's unchanged, a fresh 200 once it changed.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ApiControllerEtagTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserRepository users;
+
+    @BeforeEach
+    void seededUsers() {
+        users.reset();
+    }
+
+    @Test
+    void getUserSendsAStrongEtagToRevalidate() throws Exception {
+        mvc.perform(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, matchesPattern("\"[0-9a-f]{32}\"")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.username").value("user1"));
+    }
+
+    @Test
+    void theEtagIsStableWhileTheUserIsUnchanged() throws Exception {
+        assertThat(etagOf(1)).isEqualTo(etagOf(1));
+        assertThat(etagOf(1)).isNotEqualTo(etagOf(2));
+    }
+
+    @Test
+    void aMatchingEtagGets304WithoutABody() throws Exception {
+        String etag = etagOf(1);
+
+        mvc.perform(get("/api/users/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void aWeakFormOfTheEtagStillMatches() throws Exception {
+        // If-None-Match uses the weak comparison (RFC 9110 13.1.2)
+        mvc.perform(get("/api/users/1").header(HttpHeaders.IF_NONE_MATCH, "W/" + etagOf(1)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void anotherUsersEtagDoesntMatch() throws Exception {
+        mvc.perform(get("/api/users/2").header(HttpHeaders.IF_NONE_MATCH, etagOf(1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("user2"));
+    }
+
+    @Test
+    void anUpdateInvalidatesTheEtag() throws Exception {
+        String before = etagOf(1);
+
+        mvc.perform(put("/api/users/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"role\": \"ADMIN\"}"))
+                .andExpect(status().isOk());
+
+        String after = mvc.perform(get("/api/users/1").header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("ADMIN"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(after).isNotNull().isNotEqualTo(before);
+    }
+
+    @Test
+    void aMissingUserHasNoEtag() throws Exception {
+        mvc.perform(get("/api/users/9999").header(HttpHeaders.IF_NONE_MATCH, "\"anything\""))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+    private String etagOf(int id) throws Exception {
+        return mvc.perform(get("/api/users/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,141 @@
+package com.kontrakt.backend.web;
+
+import com.kontrakt.backend.repository.UserRepository;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * gzip request bodies: end to end through a controller, and the filter's
+ * wrapper on its own (what it hides, where it applies, blocking reads only).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class GzipRequestFilterTests {
+
+    private static final String USER = "{\"username\": \"zipped\", \"email\": \"zipped@example.com\"}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private GzipRequestFilter filter;
+
+    @Autowired
+    private UserRepository users;
+
+    @BeforeEach
+    void seededUsers() {
+        users.reset();
+    }
+
+    @Test
+    void controllersReadGzippedBodiesAsPlainJson() throws Exception {
+        mvc.perform(post("/api/users")
+                        .header("Content-Encoding", "gzip")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(gzip(USER)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.username").value("zipped"))
+                .andExpect(jsonPath("$.email").value("zipped@example.com"));
+    }
+
+    @Test
+    void plainBodiesStillWork() throws Exception {
+        mvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(USER))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.username").value("zipped"));
+    }
+
+    @Test
+    void downstreamSeesAnUnencodedRequest() throws Exception {
+        HttpServletRequest seen = filtered(gzipped("/api/users"));
+
+        assertThat(new String(seen.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(USER);
+        assertThat(seen.getInputStream().isFinished()).isTrue();
+        assertThat(seen.getHeader("Content-Encoding")).isNull();
+        assertThat(seen.getHeaders("Content-Encoding").hasMoreElements()).isFalse();
+        assertThat(seen.getHeader("Content-Length")).isNull();
+        assertThat(seen.getContentLength()).isEqualTo(-1);
+        assertThat(seen.getContentLengthLong()).isEqualTo(-1);
+    }
+
+    @Test
+    void theReaderDecodesToo() throws Exception {
+        MockHttpServletRequest request = gzipped("/api/users");
+        request.setCharacterEncoding("UTF-8");
+
+        assertThat(filtered(request).getReader().readLine()).isEqualTo(USER);
+    }
+
+    @Test
+    void onlyGzippedApiRequestsAreWrapped() throws Exception {
+        MockHttpServletRequest plain = new MockHttpServletRequest("POST", "/api/users");
+        plain.setContent(USER.getBytes(StandardCharsets.UTF_8));
+        assertThat(filtered(plain)).isSameAs(plain);
+
+        MockHttpServletRequest elsewhere = gzipped("/actuator/reset");
+        assertThat(filtered(elsewhere)).isSameAs(elsewhere);
+    }
+
+    @Test
+    void nonBlockingReadsAreRefused() throws Exception {
+        ServletInputStream body = filtered(gzipped("/api/users")).getInputStream();
+
+        assertThatThrownBy(() -> body.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() {}
+
+            @Override
+            public void onAllDataRead() {}
+
+            @Override
+            public void onError(Throwable t) {}
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    private HttpServletRequest filtered(MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return (HttpServletRequest) chain.getRequest();
+    }
+
+    private static MockHttpServletRequest gzipped(String uri) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.addHeader("Content-Encoding", "gzip");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(gzip(USER));
+        return request;
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,207 +1,342 @@
-import ast.*;
+import ir.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 
 public class CodeGenerator {
     private StringBuilder output = new StringBuilder();
-    private Program program;
+    private IrProgram program;
+
+    // Prebuilt request template (a static field) for every request in the spec
+    private final Map<IrRequest, String> templates = new IdentityHashMap<>();
+    // When set, tests are grouped into conflict-free waves (see TestScheduler)
+    // that JUnit runs concurrently, one wave after another
+    private boolean parallel = false;
+    // Buffer (and print) every response body in full, even when no assertion
+    // needs it - handy when debugging a spec
+    private boolean fullBodies = false;
+    // Check every response body against the response schemas OpenApiGenerator
+    // infers (compiled into runtime.JsonShape validators); needs full bodies
+    private boolean validate = false;
+    // Response variable of the current exchange: resp, resp2, resp3... per test
+    private String resp = "resp";
+    private int respCount = 0;
+    // Latency keys ("METHOD /path/template") already used in the current test
+    private final Map<String, Integer> latencyKeys = new HashMap<>();
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
-    //This map will be CRITICAL for Step 2
-    private Map<String, String> variables = new HashMap<>();
-    // Tracks whether we've declared the normalized body variable for the
-    // current response in the current test method
-    private boolean bodyNormDeclaredForCurrentResp = false;
+    public void setFullBodies(boolean fullBodies) {
+        this.fullBodies = fullBodies;
+    }
 
-    // Main entry point
-    public String generate(Program program){
-        this.program = program;
+    public void setValidate(boolean validate) {
+        this.validate = validate;
+    }
 
-        // 1. Visit variables first to populate the map
-        visit(program.getVariables());
+    // Main entry point. Variables are already resolved in the IR.
+    public String generate(IrProgram program){
+        this.program = program;
 
-        // 2. Build the class "shell"
+        // 1. Build the class "shell" and the request templates
         buildClassShell();
+        buildTemplates();
 
-        // 3. Build the @Test methods
-        for (Test test : program.getTests()) {
-            visit(test);
+        // 2. Build the @Test methods
+        if (parallel) {
+            visitWaves(new TestScheduler().schedule(program));
+        } else {
+            for (IrTest test : program.getTests()) {
+                visit(test);
+            }
         }
 
+        // 3. Replaying a cassette: every recorded exchange of the tests that ran must have been used
+        output.append("  @AfterAll\n");
+        output.append("  static void checkCassette() {\n");
+        output.append("    Cassette.checkAllReplayed();\n");
+        output.append("  }\n");
+
         // 4. Close the class
         output.append("}\n");
 
         return output.toString();
     }
 
-    // --- Visitor Methods for each AST node ---
-
-    private void visit(List<Variable> vars) {
-        for (Variable var : vars) {
-            // Store variables for later substitution
-            variables.put(var.getName(), var.getValue());
-        }
-    }
+    // --- Visitor Methods for each IR node ---
 
     private void buildClassShell() {
-        // Append all the imports (java.net.http.*, org.junit.jupiter.*, etc.)
+        // Append all the imports; the request/assert code itself lives in runtime.Kontrakt
         output.append("import org.junit.jupiter.api.*;\n");
-        output.append("import static org.junit.jupiter.api.Assertions.*;\n");
-        output.append("import java.net.http.*;\n");
-        output.append("import java.net.*;\n");
-        output.append("import java.time.Duration;\n");
-        output.append("import java.nio.charset.StandardCharsets;\n");
-        output.append("import java.util.*;\n\n");
+        if (parallel) {
+            output.append("import org.junit.jupiter.api.parallel.*;\n");
+        }
+        output.append("import java.net.http.HttpResponse;\n");
+        output.append("import runtime.BodyMatch;\n");
+        output.append("import runtime.Cassette;\n");
+        if (validate) {
+            output.append("import runtime.JsonShape;\n");
+        }
+        output.append("import runtime.Kontrakt;\n");
+        output.append("import runtime.Latency;\n");
+        output.append("import static runtime.Kontrakt.*;\n\n");
 
         // Class definition
+        if (parallel) {
+            // Waves run one after another, in order; tests inside a wave run concurrently.
+            // The waves must be SAME_THREAD: a CONCURRENT child is forked regardless of its parent.
+            output.append("@Execution(ExecutionMode.SAME_THREAD)\n");
+            output.append("@TestClassOrder(ClassOrderer.OrderAnnotation.class)\n");
+        }
         output.append("public class GeneratedTests {\n");
 
-        // Static fields from the spec
-        output.append("  static String BASE = \"\";\n"); // Default
-        output.append("  static Map<String,String> DEFAULT_HEADERS = new HashMap<>();\n");
-        output.append("  static HttpClient client;\n\n");
-
-        // @BeforeAll setup method
-        output.append("  @BeforeAll\n");
-        output.append("  static void setup() {\n");
-        output.append("    client = HttpClient.newBuilder()\n");
-        output.append("      .version(HttpClient.Version.HTTP_1_1)\n");
-        output.append("      .connectTimeout(Duration.ofSeconds(5))\n");
-        output.append("      .build();\n");
-
-        // NOW, use your Config AST!
-        if (program.getConfig() != null) {
-            Config cfg = program.getConfig();
-            if (cfg.getBaseUrl() != null) {
-                // Escape the URL string for inclusion in Java code
-                output.append("    BASE = \"" + escapeJava(cfg.getBaseUrl()) + "\";\n");
+        // Config from the spec: base URL and default headers, precomputed once
+        output.append("  static final Kontrakt K = Kontrakt.configure(" + literal(program.getBaseUrl()));
+        for (Map.Entry<String, String> header : program.getDefaultHeaders().entrySet()) {
+            output.append(",\n    " + literal(header.getKey()) + ", " + literal(header.getValue()));
+        }
+        output.append(")");
+        if (usesTemplatedBodies()) {
+            // Variables for `body = file "..." templated;`, substituted while streaming
+            output.append("\n    .vars(");
+            boolean first = true;
+            for (Map.Entry<String, String> var : program.getVariables().entrySet()) {
+                if (!first) output.append(", ");
+                output.append(literal(var.getKey()) + ", " + literal(var.getValue()));
+                first = false;
             }
-            for (Map.Entry<String, String> header : cfg.getDefaultHeaders().entrySet()) {
-                output.append("    DEFAULT_HEADERS.put(\"" + escapeJava(header.getKey()) + "\", \"" + escapeJava(header.getValue()) + "\");\n");
+            output.append(")");
+        }
+        if (fullBodies) {
+            output.append("\n    .verbose()");
+        }
+        if (validate) {
+            buildShapes();
+        }
+        output.append(";\n\n");
+    }
+
+    // One validator per operation and status, built once with K; each template picks up its own
+    private void buildShapes() {
+        output.append("\n    .validating()");
+        var schemas = new OpenApiGenerator().inferResponseSchemas(program);
+        for (var operation : schemas.entrySet()) {
+            int space = operation.getKey().indexOf(' ');
+            String method = operation.getKey().substring(0, space);
+            String path = operation.getKey().substring(space + 1);
+            for (var response : operation.getValue().entrySet()) {
+                output.append("\n    .shape(" + literal(method) + ", " + literal(path) + ", " + response.getKey()
+                        + ", JsonShape.JSON");
+                for (var property : response.getValue().entrySet()) {
+                    String type = property.getValue() == null ? "ANY" : property.getValue().toUpperCase();
+                    output.append("\n        .property(" + literal(property.getKey()) + ", JsonShape.Type." + type + ")");
+                }
+                output.append(")");
             }
         }
+    }
 
-        output.append("  }\n\n");
+    // One prebuilt, immutable request per request in the spec
+    private void buildTemplates() {
+        for (IrTest test : program.getTests()) {
+            latencyKeys.clear();
+            int n = 0;
+            for (IrExchange exchange : test.getExchanges()) {
+                IrRequest req = exchange.getRequest();
+                String name = test.getName() + "_" + (++n);
+                templates.put(req, name);
+
+                String key = literal(latencyKey(req));
+                String path = literal(req.getPath());
+                output.append("  static final Kontrakt.Template " + name + " = K.");
+                switch (req.getMethod()) {
+                    case GET:
+                        output.append("get(" + key + ", " + path + ")");
+                        break;
+                    case DELETE:
+                        output.append("delete(" + key + ", " + path + ")");
+                        break;
+                    case POST:
+                    case PUT:
+                        String method = req.getMethod().name().toLowerCase();
+                        if (req.getBodyFile() != null) {
+                            // Stream large payloads from disk instead of inlining them as constants
+                            output.append(method + "File(" + key + ", " + path + ", " + literal(req.getBodyFile())
+                                    + ", " + req.isBodyTemplated() + ")");
+                        } else {
+                            output.append(method + "(" + key + ", " + path + ", " + literal(req.getBody()) + ")");
+                        }
+                        break;
+                }
+                if (req.isBodyGzip()) {
+                    // Compressed once when the request is first built (files: while streaming)
+                    output.append(".gzip()");
+                }
+                if (req.getIfNoneMatch() != null) {
+                    // Fixed ETag: part of the prebuilt request
+                    output.append(".ifNoneMatch(" + literal(req.getIfNoneMatch()) + ")");
+                }
+                output.append(";\n");
+            }
+        }
+        output.append("\n");
+    }
+
+    //visitor method for the parallel schedule: one @Nested class per wave
+    private void visitWaves(List<List<IrTest>> waves) {
+        for (int i = 0; i < waves.size(); i++) {
+            output.append("  @Nested\n");
+            output.append("  @Order(" + (i + 1) + ")\n");
+            output.append("  @Execution(ExecutionMode.SAME_THREAD)\n");
+            output.append("  class Wave" + (i + 1) + " {\n");
+
+            // Render the tests on their own, then indent them into the nested class
+            StringBuilder outer = output;
+            output = new StringBuilder();
+            for (IrTest test : waves.get(i)) {
+                visit(test);
+            }
+            for (String line : output.toString().stripTrailing().split("\n")) {
+                if (!line.isEmpty()) outer.append("  ").append(line);
+                outer.append("\n");
+            }
+            output = outer;
+
+            output.append("  }\n\n");
+        }
     }
 
     //visitor method for Test
-    private void visit(Test test) {
+    private void visit(IrTest test) {
         // Generate a new @Test method
         output.append("  @Test\n");
+        if (parallel) {
+            output.append("  @Execution(ExecutionMode.CONCURRENT)\n");
+        }
         output.append("  void test_" + test.getName() + "() throws Exception {\n");
-        bodyNormDeclaredForCurrentResp = false;
-
-        // Visit all statements (requests and assertions) inside this test
-        for (Statement stmt : test.getStatements()) {
-            if (stmt instanceof Request) {
-                visit((Request) stmt);
-            } else if (stmt instanceof Assertion) {
-                visit((Assertion) stmt);
+        output.append("    Latency.begin(" + literal(test.getName()) + ");\n");
+        output.append("    try {\n");
+        respCount = 0;
+
+        // Visit every exchange (a request and the assertions on its response),
+        // then indent them into the try block
+        StringBuilder outer = output;
+        output = new StringBuilder();
+        for (IrExchange exchange : test.getExchanges()) {
+            visit(exchange.getRequest(), exchange.getAssertions());
+            for (IrAssertion assertion : exchange.getAssertions()) {
+                visit(assertion);
             }
         }
+        for (String line : output.toString().split("\n")) {
+            if (!line.isEmpty()) outer.append("  ").append(line).append("\n");
+        }
+        output = outer;
 
+        // Failed runs are timed too, or the whole-test distribution only keeps the fast ones
+        output.append("    } finally {\n");
+        output.append("      Latency.end();\n");
+        output.append("    }\n");
         output.append("  }\n\n");
     }
 
-    //visitor method for Request
-    private void visit(Request req) {
-        // This is where we translate our Request AST node into HttpClient code
-        // *the most complex part
-
-        // Handle variable substitution first!
-        String path = substitute(req.getPath());
-
-        // Note: The spec example shows BASE + path.
-        // You must decide if the path is absolute or relative.
-        // A simple check:
-        String url;
-        if (path.startsWith("/")) {
-            url = "BASE + \"" + escapeJava(path) + "\"";
+    //visitor method for Request; `checks` are the assertions made on its response
+    private void visit(IrRequest req, List<IrAssertion> checks) {
+        // Only download as much of the body as the assertions need:
+        //  - no body assertion       -> discard it unread
+        //  - only `body contains`    -> stream it, stop once every needle was seen
+        //  - fullBodies (debugging)  -> buffer and print all of it
+        //  - validate                -> buffer it, the schema check reads all of it
+        // `compressed size` needs every byte, so it rules out stopping early
+        List<String> needles = new ArrayList<>();
+        boolean measured = false;
+        for (IrAssertion check : checks) {
+            if (check instanceof IrAssertion.BodyContains body) {
+                for (String fragment : body.getFragments()) {
+                    needles.add(bodyNeedle(fragment));
+                }
+            } else if (check instanceof IrAssertion.CompressedSizeBelow) {
+                measured = true;
+            }
+        }
+        String responseType;
+        String handler;
+        if (fullBodies || validate || (measured && !needles.isEmpty())) {
+            responseType = "String";
+            handler = "HttpResponse.BodyHandlers.ofString()";
+        } else if (needles.isEmpty()) {
+            responseType = "Void";
+            handler = "HttpResponse.BodyHandlers.discarding()";
         } else {
-            url = "\"" + escapeJava(path) + "\""; // Assumes it's a full URL
-        }
-
-        output.append("    System.out.println(\"--> " + req.getMethod() + " \" + " + url + ");\n");
-        output.append("    HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(" + url + "))\n");
-        output.append("      .timeout(Duration.ofSeconds(10))\n");
-
-        // Handle method
-        switch (req.getMethod()) {
-            case GET:
-                output.append("      .GET();\n");
-                break;
-            case POST:
-                String body = substitute(req.getBody());
-                output.append("      .POST(HttpRequest.BodyPublishers.ofString(\"" + escapeJava(body) + "\"));\n");
-                output.append("    System.out.println(\"    body=\" + \"" + escapeJava(body) + "\");\n");
-                break;
-            case PUT:
-                String bodyPut = substitute(req.getBody());
-                output.append("      .PUT(HttpRequest.BodyPublishers.ofString(\"" + escapeJava(bodyPut) + "\"));\n");
-                output.append("    System.out.println(\"    body=\" + \"" + escapeJava(bodyPut) + "\");\n");
-                break;
-            case DELETE:
-                output.append("      .DELETE();\n");
-                break;
-        }
-
-        // Add default headers (required by spec)
-        output.append("    for (var e: DEFAULT_HEADERS.entrySet()) b.header(e.getKey(), e.getValue());\n");
-        output.append("    b.header(\"Accept\", \"application/json\");\n");
-
-        // TODO: Add request-specific headers (if your AST supports them)
-
-        // Send the request
-        output.append("    HttpResponse<String> resp = client.send(b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));\n");
-        output.append("    System.out.println(\"<-- status=\" + resp.statusCode());\n");
-        output.append("    System.out.println(resp.body());\n\n");
-        // New response means normalized body variable needs to be (re)declared
-        bodyNormDeclaredForCurrentResp = false;
+            responseType = "String";
+            handler = "BodyMatch.untilFound(" + String.join(", ", needles) + ")";
+        }
+
+        // Send the prebuilt request (through the cassette: live, recording or replaying);
+        // `if-none-match previous` sends the ETag of the response before this one
+        String previous = resp;
+        resp = ++respCount == 1 ? "resp" : "resp" + respCount;
+        String send = req.isIfNoneMatchPrevious()
+                ? ".sendIfNoneMatch(etag(" + previous + "), " + handler + ")"
+                : ".send(" + handler + ")";
+        output.append("    HttpResponse<" + responseType + "> " + resp + " = " + templates.get(req) + send + ";\n");
     }
 
     //visitor method for Assertion
-    private void visit(Assertion ast) {
-        // This is a direct mapping from your Assertion AST node to a JUnit assertion
-        switch (ast.getType()) {
-            case STATUS:
-                output.append("    assertEquals(" + ast.getStatusCode() + ", resp.statusCode());\n");
-                break;
-            case STATUS_RANGE:
-                output.append("    assertTrue(resp.statusCode() >= " + ast.getMinStatus()
-                        + " && resp.statusCode() <= " + ast.getMaxStatus() + ");\n");
-                break;
-            case BODY_CONTAINS:
-                // Make body-contains assertions whitespace-insensitive.
-                // Declare normalized body once per response, then reuse.
-                if (!bodyNormDeclaredForCurrentResp) {
-                    output.append("    String _bodyNoWs = resp.body().replace(\" \", \"\").replace(\"\\n\", \"\").replace(\"\\r\", \"\").replace(\"\\t\", \"\");\n");
-                    bodyNormDeclaredForCurrentResp = true;
-                }
-                output.append("    assertTrue(_bodyNoWs.contains(\""
-                              + escapeJava(ast.getExpectedValue()).replaceAll("\\s+", "") + "\"));\n");
-                break;
-            case HEADER_EQUALS:
-                output.append("    assertEquals(\"" + escapeJava(ast.getExpectedValue()) + "\", resp.headers().firstValue(\"" + escapeJava(ast.getHeaderName()) + "\").orElse(\"\"));\n");
-                break;
-            case HEADER_CONTAINS:
-                output.append("    assertTrue(resp.headers().firstValue(\"" + escapeJava(ast.getHeaderName()) + "\").orElse(\"\").contains(\"" + escapeJava(ast.getExpectedValue()) + "\"));\n");
-                break;
+    private void visit(IrAssertion assertion) {
+        // This is a direct mapping from the IR assertion node to a Kontrakt assertion helper
+        if (assertion instanceof IrAssertion.Status a) {
+            output.append("    expectStatus(" + resp + ", " + a.getCode() + ");\n");
+        } else if (assertion instanceof IrAssertion.StatusRange a) {
+            output.append("    expectStatusIn(" + resp + ", " + a.getMin() + ", " + a.getMax() + ");\n");
+        } else if (assertion instanceof IrAssertion.BodyContains a) {
+            // Whitespace-insensitive: needles are normalized here, the body at runtime
+            List<String> needles = new ArrayList<>();
+            for (String fragment : a.getFragments()) {
+                needles.add(bodyNeedle(fragment));
+            }
+            output.append("    expectBodyContains(" + resp + ", " + String.join(", ", needles) + ");\n");
+        } else if (assertion instanceof IrAssertion.HeaderEquals a) {
+            output.append("    expectHeader(" + resp + ", " + literal(a.getName()) + ", " + literal(a.getValue()) + ");\n");
+        } else if (assertion instanceof IrAssertion.HeaderContains a) {
+            output.append("    expectHeaderContains(" + resp + ", " + literal(a.getName()) + ", " + literal(a.getSubstring()) + ");\n");
+        } else if (assertion instanceof IrAssertion.CompressedSizeBelow a) {
+            output.append("    expectCompressedSizeBelow(" + resp + ", " + a.getMaxBytes() + "L);\n");
         }
     }
 
     // --- Helper Methods ---
 
-    /**
-     * Variable substitution: replaces $var with its value
-     */
-    private String substitute(String input) {
-        if (input == null) return null;
+    // Java literal of a whitespace-insensitive `body contains` needle
+    private String bodyNeedle(String fragment) {
+        return literal(IrAssertion.BodyContains.normalize(fragment));
+    }
+
+    private String literal(String s) {
+        return "\"" + escapeJava(s) + "\"";
+    }
 
-        String result = input;
-        for (Map.Entry<String, String> var : variables.entrySet()) {
-            result = result.replace("$" + var.getKey(), var.getValue());
+    // "METHOD /path/template", with "#2", "#3"... for repeats inside one test
+    private String latencyKey(IrRequest req) {
+        String key = req.getMethod() + " " + req.getPathTemplate();
+        int seen = latencyKeys.merge(key, 1, Integer::sum);
+        return seen == 1 ? key : key + " #" + seen;
+    }
+
+    private boolean usesTemplatedBodies() {
+        for (IrTest test : program.getTests()) {
+            for (IrExchange exchange : test.getExchanges()) {
+                IrRequest req = exchange.getRequest();
+                if (req.getBodyFile() != null && req.isBodyTemplated()) {
+                    return true;
+                }
+            }
         }
-        return result;
+        return false;
     }
 
     /**
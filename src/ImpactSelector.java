@@ -0,0 +1,459 @@
+import ast.HttpMethod;
+import ir.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+import java.util.stream.Stream;
+
+/**
+ * Impact-based test selection: keeps only the tests that call an endpoint
+ * whose Spring handler changed since a git ref.
+ *
+ * The backend sources are scanned for @RestController/@Controller classes;
+ * every @GetMapping/@PostMapping/@PutMapping/@DeleteMapping/@PatchMapping/
+ * @RequestMapping method becomes a route (HTTP method + path template, class
+ * prefix included) with the line span of its handler. `git diff --unified=0`
+ * then says which lines changed, and a test is selected when one of its
+ * requests (method + resolved path) matches the template of a changed route.
+ *
+ * It errs on the side of running more:
+ *  - a change in a controller outside any handler (fields, helpers) selects
+ *    every route of that controller
+ *  - any other change (repository, model, config, pom, the DSL toolchain,
+ *    the specs...) selects everything; only docs and the backend's own
+ *    tests are ignored
+ *  - if git can't produce a diff, everything runs
+ */
+public class ImpactSelector {
+
+    private static final Pattern MAPPING = Pattern.compile("@(Get|Post|Put|Delete|Patch|Request)Mapping\\b");
+    private static final Pattern CONTROLLER = Pattern.compile("@(Rest)?Controller\\b");
+    private static final Pattern PATH_ATTRIBUTE = Pattern.compile("\\b(value|path)\\s*=\\s*(\\{[^}]*\\}|\"(?:[^\"\\\\]|\\\\.)*\")");
+    private static final Pattern STRING = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern REQUEST_METHOD = Pattern.compile("RequestMethod\\.(GET|POST|PUT|DELETE|PATCH)");
+
+    private final Path backendDir;
+    private final String ref;
+    private final Map<Path, boolean[]> codeLines = new HashMap<>();      // per controller line: not just comments
+    private final Map<Path, Set<Integer>> deletions = new HashMap<>();   // lines where a hunk only removed code
+
+    public ImpactSelector(Path backendDir, String ref) {
+        this.backendDir = backendDir;
+        this.ref = ref;
+    }
+
+    public IrProgram select(IrProgram program) throws IOException, InterruptedException {
+        return select(program, changedLines());
+    }
+
+    // `changes`: changed lines per absolute file, null when git couldn't say
+    IrProgram select(IrProgram program, Map<Path, Set<Integer>> changes) throws IOException {
+        if (changes == null) {
+            System.out.println("⚠️  Could not diff against " + ref + ", running all tests");
+            return program;
+        }
+
+        Map<Path, List<Route>> controllers = scanControllers();
+        Set<Route> changed = new LinkedHashSet<>();
+        for (var entry : changes.entrySet()) {
+            Path file = entry.getKey();
+            if (ignored(file)) continue;
+            List<Route> routes = controllers.get(file);
+            if (routes == null) {
+                System.out.println("🎯 " + relative(file) + " changed outside the controllers, running all tests");
+                return program;
+            }
+            boolean[] code = codeLines.get(file);
+            for (int line : entry.getValue()) {
+                // Edited comments and blank lines don't change behaviour; deletions always count
+                if (line > 0 && line <= code.length && !code[line - 1]
+                        && !deletions.getOrDefault(file, Set.of()).contains(line)) continue;
+                boolean inHandler = false;
+                for (Route route : routes) {
+                    if (route.contains(line)) {
+                        changed.add(route);
+                        inHandler = true;
+                    }
+                }
+                if (!inHandler) {
+                    // Shared code in the controller: any of its handlers may be affected
+                    changed.addAll(routes);
+                }
+            }
+        }
+
+        List<IrTest> tests = new ArrayList<>();
+        for (IrTest test : program.getTests()) {
+            if (hits(test, changed)) tests.add(test);
+        }
+
+        System.out.println("🎯 Impact vs " + ref + ": " + changed.size() + " changed handler(s)"
+                + (changed.isEmpty() ? "" : " " + changed) + ", " + tests.size() + " of "
+                + program.getTests().size() + " tests selected");
+        return new IrProgram(program.getBaseUrl(), program.getDefaultHeaders(), program.getVariables(), tests);
+    }
+
+    // ---------------------------------------------------------------------
+    // Matching tests to routes
+
+    private boolean hits(IrTest test, Set<Route> routes) {
+        for (IrExchange exchange : test.getExchanges()) {
+            IrRequest req = exchange.getRequest();
+            String path = pathOf(req.getPath());
+            for (Route route : routes) {
+                if (route.matches(req.getMethod(), path)) return true;
+            }
+        }
+        return false;
+    }
+
+    // Path part of a (possibly absolute) request target, without the query
+    private static String pathOf(String target) {
+        String path = target;
+        if (!path.startsWith("/")) {
+            try {
+                path = java.net.URI.create(path).getRawPath();
+            } catch (IllegalArgumentException e) {
+                // keep as is
+            }
+            if (path == null || path.isEmpty()) path = "/";
+        }
+        int q = path.indexOf('?');
+        return q == -1 ? path : path.substring(0, q);
+    }
+
+    // ---------------------------------------------------------------------
+    // git
+
+    // Changed lines (in the current version) per absolute file; null if git failed
+    private Map<Path, Set<Integer>> changedLines() throws IOException, InterruptedException {
+        List<String> top = git("rev-parse", "--show-toplevel");
+        if (top == null || top.isEmpty()) return null;
+        Path root = Paths.get(top.get(0)).toAbsolutePath().normalize();
+
+        List<String> diff = git("diff", "--unified=0", "--no-color", "--no-ext-diff", ref, "--");
+        if (diff == null) return null;
+        Map<Path, Set<Integer>> changes = parseDiff(diff, root);
+
+        // New backend files git doesn't track yet: every line is new (outside the backend
+        // these are mostly generated GeneratedTests/GeneratedStubServer sources)
+        List<String> untracked = git("ls-files", "--others", "--exclude-standard", "--full-name", "--",
+                backendDir.toAbsolutePath().normalize().toString());
+        if (untracked != null) {
+            for (String name : untracked) {
+                Path file = root.resolve(name).normalize();
+                Set<Integer> lines = changes.computeIfAbsent(file, k -> new TreeSet<>());
+                int count = Files.isRegularFile(file) ? Files.readAllLines(file, StandardCharsets.UTF_8).size() : 0;
+                for (int i = 1; i <= Math.max(count, 1); i++) lines.add(i);
+            }
+        }
+        return changes;
+    }
+
+    // Changed lines per file of a `git diff --unified=0` run in `root`; -1 marks a deleted file
+    Map<Path, Set<Integer>> parseDiff(List<String> diff, Path root) {
+        Map<Path, Set<Integer>> changes = new LinkedHashMap<>();
+        Path current = null;
+        Pattern hunk = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@");
+        String oldFile = null;
+        for (String line : diff) {
+            if (line.startsWith("--- ")) {
+                oldFile = line.substring(4);
+            } else if (line.startsWith("+++ ")) {
+                String name = line.substring(4);
+                // A deleted file: remember the old path, every line counts
+                if (name.equals("/dev/null")) name = oldFile;
+                current = root.resolve(name.replaceFirst("^[ab]/", "")).normalize();
+                changes.computeIfAbsent(current, k -> new TreeSet<>());
+                if (line.substring(4).equals("/dev/null")) changes.get(current).add(-1);
+            } else if (current != null) {
+                Matcher m = hunk.matcher(line);
+                if (m.find()) {
+                    int start = Integer.parseInt(m.group(1));
+                    int count = m.group(2) == null ? 1 : Integer.parseInt(m.group(2));
+                    Set<Integer> lines = changes.get(current);
+                    if (count == 0) {
+                        lines.add(Math.max(start, 1)); // pure deletion after line `start`
+                        deletions.computeIfAbsent(current, k -> new HashSet<>()).add(Math.max(start, 1));
+                    } else {
+                        for (int i = start; i < start + count; i++) lines.add(i);
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    private List<String> git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException e) {
+            // No git on the PATH: same as a failed diff, select() runs everything
+            System.out.println("⚠️  Could not run git: " + e.getMessage());
+            return null;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) lines.add(line);
+        }
+        return process.waitFor() == 0 ? lines : null;
+    }
+
+    private boolean ignored(Path file) {
+        String name = file.getFileName().toString();
+        Path backendTests = backendDir.resolve("src/test").toAbsolutePath().normalize();
+        return name.endsWith(".md") || file.startsWith(backendTests) || file.toString().contains("/public/");
+    }
+
+    private String relative(Path file) {
+        Path cwd = Paths.get("").toAbsolutePath();
+        return file.startsWith(cwd) ? cwd.relativize(file).toString() : file.toString();
+    }
+
+    // ---------------------------------------------------------------------
+    // Controller scanning
+
+    private Map<Path, List<Route>> scanControllers() throws IOException {
+        Map<Path, List<Route>> controllers = new HashMap<>();
+        Path sources = backendDir.resolve("src/main/java");
+        if (!Files.isDirectory(sources)) return controllers;
+        try (Stream<Path> files = Files.walk(sources)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".java"))::iterator) {
+                String source = Files.readString(file, StandardCharsets.UTF_8);
+                String code = mask(source);
+                if (CONTROLLER.matcher(code).find()) {
+                    Path key = file.toAbsolutePath().normalize();
+                    controllers.put(key, routes(source, code));
+                    codeLines.put(key, codeLines(source));
+                }
+            }
+        }
+        return controllers;
+    }
+
+    // Routes of one controller; `code` is the source with comments and literals blanked out
+    static List<Route> routes(String source, String code) {
+        int classStart = code.indexOf(" class ");
+        String prefix = "";
+        List<Route> routes = new ArrayList<>();
+
+        Matcher m = MAPPING.matcher(code);
+        while (m.find()) {
+            String kind = m.group(1);
+            int argsEnd = m.end();
+            String args = "";
+            int open = skipSpaces(code, m.end());
+            if (open < code.length() && code.charAt(open) == '(') {
+                argsEnd = closing(code, open, '(', ')');
+                args = source.substring(open + 1, argsEnd);
+                argsEnd++;
+            }
+
+            List<String> paths = paths(args);
+            if (classStart != -1 && m.start() < classStart) {
+                // Class-level @RequestMapping: prefix for every handler
+                if (kind.equals("Request") && !paths.isEmpty()) prefix = paths.get(0);
+                continue;
+            }
+
+            // The handler body: the first '{' outside parentheses (parameters, other annotations)
+            int body = -1;
+            int depth = 0;
+            for (int i = argsEnd; i < code.length(); i++) {
+                char c = code.charAt(i);
+                if (c == '(') depth++;
+                else if (c == ')') depth--;
+                else if (depth == 0 && c == ';') break; // abstract/interface method
+                else if (depth == 0 && c == '{') { body = i; break; }
+            }
+            if (body == -1) continue;
+            int end = closing(code, body, '{', '}');
+
+            List<HttpMethod> methods = new ArrayList<>();
+            if (kind.equals("Request")) {
+                Matcher rm = REQUEST_METHOD.matcher(args);
+                while (rm.find()) methods.add(method(rm.group(1)));
+            } else {
+                methods.add(method(kind.toUpperCase(Locale.ROOT)));
+            }
+            if (paths.isEmpty()) paths = List.of("");
+
+            int firstLine = lineOf(code, m.start());
+            int lastLine = lineOf(code, end);
+            for (String path : paths) {
+                routes.add(new Route(methods, join(prefix, path), firstLine, lastLine));
+            }
+        }
+        return routes;
+    }
+
+    // String values of value=/path= (or the positional value) of a mapping annotation
+    private static List<String> paths(String args) {
+        String values = args;
+        if (args.contains("=")) {
+            Matcher attr = PATH_ATTRIBUTE.matcher(args);
+            values = attr.find() ? attr.group(2) : "";
+        }
+        List<String> paths = new ArrayList<>();
+        Matcher s = STRING.matcher(values);
+        while (s.find()) paths.add(s.group(1));
+        return paths;
+    }
+
+    // PATCH isn't in the DSL; such routes can't match any test
+    private static HttpMethod method(String name) {
+        try {
+            return HttpMethod.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String join(String prefix, String path) {
+        String joined = ("/" + prefix + "/" + path).replaceAll("/+", "/");
+        return joined.length() > 1 && joined.endsWith("/") ? joined.substring(0, joined.length() - 1) : joined;
+    }
+
+    // Blanks out comments and string/char literals, keeping offsets and newlines
+    static String mask(String source) {
+        char[] out = source.toCharArray();
+        int i = 0;
+        while (i < out.length) {
+            char c = source.charAt(i);
+            char next = i + 1 < out.length ? source.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                while (i < out.length && source.charAt(i) != '\n') out[i++] = ' ';
+            } else if (c == '/' && next == '*') {
+                int end = source.indexOf("*/", i + 2);
+                end = end == -1 ? out.length : end + 2;
+                for (; i < end; i++) if (out[i] != '\n') out[i] = ' ';
+            } else if (c == '"' && source.startsWith("\"\"\"", i)) {
+                int end = source.indexOf("\"\"\"", i + 3);
+                end = end == -1 ? out.length : end + 3;
+                for (i += 3; i < end - 3; i++) if (out[i] != '\n') out[i] = ' ';
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < out.length && source.charAt(i) != c && source.charAt(i) != '\n') {
+                    if (source.charAt(i) == '\\') out[i++] = ' ';
+                    if (i < out.length) out[i++] = ' ';
+                }
+                i++;
+            } else {
+                i++;
+            }
+        }
+        return new String(out);
+    }
+
+    // Per line: does it hold code? Comments and whitespace don't; string and
+    // text-block contents do, blank lines of a text block included
+    static boolean[] codeLines(String source) {
+        boolean[] code = new boolean[source.split("\n", -1).length];
+        int line = 0;
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            char next = i + 1 < source.length() ? source.charAt(i + 1) : 0;
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (c == '/' && next == '/') {
+                while (i < source.length() && source.charAt(i) != '\n') i++;
+            } else if (c == '/' && next == '*') {
+                int end = source.indexOf("*/", i + 2);
+                end = end == -1 ? source.length() : end + 2;
+                for (; i < end; i++) if (source.charAt(i) == '\n') line++;
+            } else if (c == '"' && source.startsWith("\"\"\"", i)) {
+                int end = source.indexOf("\"\"\"", i + 3);
+                end = end == -1 ? source.length() : end + 3;
+                for (; i < end; i++) {
+                    code[line] = true;
+                    if (source.charAt(i) == '\n') line++;
+                }
+            } else if (c == '"' || c == '\'') {
+                // Skipped whole so a "//" or "/*" inside isn't taken for a comment
+                code[line] = true;
+                i++;
+                while (i < source.length() && source.charAt(i) != c && source.charAt(i) != '\n') {
+                    i += source.charAt(i) == '\\' ? 2 : 1;
+                }
+                if (i < source.length() && source.charAt(i) == c) i++;
+            } else {
+                if (!Character.isWhitespace(c)) code[line] = true;
+                i++;
+            }
+        }
+        return code;
+    }
+
+    private static int closing(String code, int open, char openChar, char closeChar) {
+        int depth = 0;
+        for (int i = open; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == openChar) depth++;
+            else if (c == closeChar && --depth == 0) return i;
+        }
+        return code.length() - 1;
+    }
+
+    private static int skipSpaces(String code, int from) {
+        int i = from;
+        while (i < code.length() && Character.isWhitespace(code.charAt(i))) i++;
+        return i;
+    }
+
+    private static int lineOf(String code, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset && i < code.length(); i++) {
+            if (code.charAt(i) == '\n') line++;
+        }
+        return line;
+    }
+
+    // ---------------------------------------------------------------------
+    // Data structures
+
+    static final class Route {
+        final List<HttpMethod> methods; // empty: any method
+        final String template;          // /api/users/{id}
+        final int firstLine;            // handler annotations .. closing brace
+        final int lastLine;
+
+        Route(List<HttpMethod> methods, String template, int firstLine, int lastLine) {
+            this.methods = methods;
+            this.template = template;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+        }
+
+        boolean contains(int line) {
+            return line == -1 || (firstLine <= line && line <= lastLine);
+        }
+
+        boolean matches(HttpMethod method, String path) {
+            if (!methods.isEmpty() && !methods.contains(method)) return false;
+            String[] want = template.split("/");
+            String[] got = path.replaceAll("/+$", "").split("/");
+            if (want.length != got.length) return false;
+            for (int i = 0; i < want.length; i++) {
+                boolean variable = want[i].startsWith("{") && want[i].endsWith("}");
+                if (variable ? got[i].isEmpty() : !want[i].equals(got[i])) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            String method = methods.isEmpty() ? "*" : methods.size() == 1 ? String.valueOf(methods.get(0)) : methods.toString();
+            return method + " " + template;
+        }
+    }
+}
@@ -1,17 +1,48 @@
 import java.io.*;
+import java.nio.file.*;
+import java.util.Map;
 import java_cup.runtime.*;
 import ast.*;
+import ir.*;
 
 public class Main {
     public static void main(String[] args) {
         //System.out.println("🚀 Starting Kontrakt++ Parser Test\n");
         
+        parser parser = null;
         try {
-            String filename = args.length > 0 ? args[0] : "examples/example.test";
+            String filename = "examples/example.test";
+            boolean parallel = false;
+            boolean fullBodies = false;
+            boolean validate = false;  // --validate: check every response against the inferred schemas
+            String shard = null;      // --shard i/n
+            String durations = null;  // --durations durations.tsv (balances the shards)
+            String impact = null;     // --impact <git ref>: only tests hitting changed handlers
+            String backend = "backend";
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--parallel")) {
+                    parallel = true;
+                } else if (arg.equals("--full-bodies")) {
+                    fullBodies = true;
+                } else if (arg.equals("--validate")) {
+                    validate = true;
+                } else if (arg.equals("--shard") && i + 1 < args.length) {
+                    shard = args[++i];
+                } else if (arg.equals("--durations") && i + 1 < args.length) {
+                    durations = args[++i];
+                } else if (arg.equals("--impact") && i + 1 < args.length) {
+                    impact = args[++i];
+                } else if (arg.equals("--backend") && i + 1 < args.length) {
+                    backend = args[++i];
+                } else {
+                    filename = arg;
+                }
+            }
             
             FileReader fileReader = new FileReader(filename);
             KontraktScanner scanner = new KontraktScanner(fileReader);
-            parser parser = new parser(scanner);
+            parser = new parser(scanner);
 
             Symbol result = parser.parse();
 
@@ -26,7 +57,18 @@ public class Main {
 
             //code generation
             CodeGenerator generator = new CodeGenerator();
-            String javaCode = generator.generate(program);
+            generator.setParallel(parallel);
+            generator.setFullBodies(fullBodies);
+            generator.setValidate(validate);
+            // Lower to the IR and run the optimization passes before generating
+            IrProgram ir = Optimizer.standard().optimize(new Lowering().lower(program));
+            if (impact != null) {
+                ir = new ImpactSelector(Paths.get(backend), impact).select(ir);
+            }
+            if (shard != null) {
+                ir = shard(ir, shard, durations);
+            }
+            String javaCode = generator.generate(ir);
 
             // Write to a new file - GeneratedTests.java
             try (FileWriter writer = new FileWriter("GeneratedTests.java")) {
@@ -40,8 +82,36 @@ public class Main {
             System.exit(1);
         } catch (Exception e) {
             // Custom parser error messages are already printed via report_error().
-            // Avoid adding extra noise here.
+            // Avoid adding extra noise for those; anything else needs saying.
+            if (parser == null || !parser.hadErrors()) {
+                System.err.println("❌ " + e.getMessage());
+            }
+            System.exit(1);
+        }
+    }
+
+    // Keeps only this shard's tests
+    private static IrProgram shard(IrProgram ir, String spec, String durationsFile) throws IOException {
+        Map<String, Double> durations = null;
+        if (durationsFile != null) {
+            Path path = Paths.get(durationsFile);
+            if (Files.exists(path)) {
+                durations = TestSharder.readDurations(path);
+            } else {
+                System.out.println("⚠️  " + durationsFile + " not found, sharding by test name hash");
+            }
+        }
+
+        TestSharder sharder;
+        try {
+            sharder = TestSharder.parse(spec, durations);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
             System.exit(1);
+            return ir;
         }
+        IrProgram selected = sharder.select(ir);
+        System.out.println("🔀 Shard " + spec + ": " + selected.getTests().size() + " of " + ir.getTests().size() + " tests");
+        return selected;
     }
 }
@@ -1,6 +1,7 @@
 import java.io.*;
 import java_cup.runtime.*;
 import ast.*;
+import ir.*;
 
 public class MainOpenAPI {
   public static void main(String[] args) throws Exception {
@@ -14,9 +15,10 @@ public class MainOpenAPI {
       p.parse(); // builds Program inside parser
       
       Program program = p.getProgram();
+      IrProgram ir = Optimizer.standard().optimize(new Lowering().lower(program));
 
       OpenApiGenerator gen = new OpenApiGenerator();
-      String yaml = gen.generate(program);
+      String yaml = gen.generate(ir);
 
       try (FileWriter w = new FileWriter("openapi.yaml")) {
         w.write(yaml);
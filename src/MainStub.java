@@ -0,0 +1,32 @@
+import java.io.*;
+import java_cup.runtime.*;
+import ast.*;
+import ir.*;
+
+public class MainStub {
+  public static void main(String[] args) throws Exception {
+
+    String filename = args.length > 0 ? args[0] : "examples/example_1.test";
+
+    try (FileReader r = new FileReader(filename)) {
+      KontraktScanner scanner = new KontraktScanner(r);
+      parser p = new parser(scanner);
+
+      p.parse(); // builds Program inside parser
+
+      Program program = p.getProgram();
+      IrProgram ir = Optimizer.standard().optimize(new Lowering().lower(program));
+
+      StubServerGenerator gen = new StubServerGenerator();
+      String java = gen.generate(ir);
+      for (String warning : gen.getWarnings()) {
+        System.out.println("⚠️  " + warning);
+      }
+
+      try (FileWriter w = new FileWriter("GeneratedStubServer.java")) {
+        w.write(java);
+      }
+      System.out.println("✅ Wrote GeneratedStubServer.java");
+    }
+  }
+}
@@ -0,0 +1,111 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import javax.xml.parsers.*;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.w3c.dom.*;
+
+/**
+ * Merges the JUnit XML reports of several shard runs into one report, and
+ * writes the per-test durations that `Main --shard i/n --durations ...` uses
+ * to balance the next run.
+ *
+ * Usage: MergeShardReports <outDir> <shardReportDir>...
+ * Each shard dir is a console launcher --reports-dir (TEST-*.xml inside).
+ */
+public class MergeShardReports {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: MergeShardReports <outDir> <shardReportDir>...");
+            System.exit(1);
+        }
+
+        Path outDir = Paths.get(args[0]);
+        Files.createDirectories(outDir);
+
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document merged = builder.newDocument();
+        Element suite = merged.createElement("testsuite");
+        merged.appendChild(suite);
+
+        int tests = 0, failures = 0, errors = 0, skipped = 0;
+        double totalTime = 0, slowestShard = 0;
+        Map<String, Double> durations = new TreeMap<>();
+
+        for (int i = 1; i < args.length; i++) {
+            double shardTime = 0;
+            for (Path report : reportsIn(Paths.get(args[i]))) {
+                Document doc = builder.parse(report.toFile());
+                NodeList cases = doc.getElementsByTagName("testcase");
+                for (int c = 0; c < cases.getLength(); c++) {
+                    Element testcase = (Element) cases.item(c);
+                    double time = parseTime(testcase.getAttribute("time"));
+                    tests++;
+                    if (testcase.getElementsByTagName("failure").getLength() > 0) failures++;
+                    if (testcase.getElementsByTagName("error").getLength() > 0) errors++;
+                    if (testcase.getElementsByTagName("skipped").getLength() > 0) skipped++;
+                    shardTime += time;
+
+                    Element copy = (Element) merged.importNode(testcase, true);
+                    copy.setAttribute("shard", String.valueOf(i));
+                    suite.appendChild(copy);
+                    durations.put(testName(testcase.getAttribute("name")), time);
+                }
+            }
+            System.out.printf("  shard %d (%s): %.3fs%n", i, args[i], shardTime);
+            totalTime += shardTime;
+            slowestShard = Math.max(slowestShard, shardTime);
+        }
+
+        suite.setAttribute("name", "Kontrakt (" + (args.length - 1) + " shards merged)");
+        suite.setAttribute("tests", String.valueOf(tests));
+        suite.setAttribute("failures", String.valueOf(failures));
+        suite.setAttribute("errors", String.valueOf(errors));
+        suite.setAttribute("skipped", String.valueOf(skipped));
+        suite.setAttribute("time", String.format(Locale.ROOT, "%.3f", totalTime));
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.transform(new DOMSource(merged),
+                new StreamResult(outDir.resolve("TEST-kontrakt-merged.xml").toFile()));
+
+        try (BufferedWriter w = Files.newBufferedWriter(outDir.resolve("durations.tsv"), StandardCharsets.UTF_8)) {
+            w.write("# test\tseconds\n");
+            for (var entry : durations.entrySet()) {
+                w.write(entry.getKey() + "\t" + String.format(Locale.ROOT, "%.3f", entry.getValue()) + "\n");
+            }
+        }
+
+        System.out.printf("✅ %d tests, %d failed, %d errors, %d skipped - %.3fs total, %.3fs on the slowest shard%n",
+                tests, failures, errors, skipped, totalTime, slowestShard);
+        System.out.println("✅ Wrote " + outDir.resolve("TEST-kontrakt-merged.xml") + " and " + outDir.resolve("durations.tsv"));
+        if (failures + errors > 0) System.exit(1);
+    }
+
+    private static List<Path> reportsIn(Path dir) throws IOException {
+        List<Path> reports = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "TEST-*.xml")) {
+            files.forEach(reports::add);
+        }
+        Collections.sort(reports);
+        return reports;
+    }
+
+    // "test_Login()" -> "Login", the name the spec uses
+    private static String testName(String junitName) {
+        String name = junitName.endsWith("()") ? junitName.substring(0, junitName.length() - 2) : junitName;
+        return name.startsWith("test_") ? name.substring(5) : name;
+    }
+
+    private static double parseTime(String time) {
+        try {
+            return time.isEmpty() ? 0 : Double.parseDouble(time.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
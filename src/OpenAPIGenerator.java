@@ -1,31 +1,29 @@
-import ast.*;
+import ir.*;
 import java.util.*;
 
 /**
- * Generates a minimal OpenAPI 3.0 YAML document from the Kontrakt AST.
+ * Generates a minimal OpenAPI 3.0 YAML document from the Kontrakt IR.
  * The focus is structure correctness (servers/paths/responses) and
  * small examples built from request bodies and assertions.
+ *
+ * Response schemas are inferred from the `body contains "\"key\": value"`
+ * checks: each key becomes a property typed after its value. The same
+ * schemas drive response validation in the generated tests (--validate).
  */
 public class OpenApiGenerator {
 
     private final StringBuilder out = new StringBuilder();
-    private final Map<String, String> variables = new HashMap<>();
-
-    public String generate(Program program) {
-        variables.clear();
-        for (Variable v : program.getVariables()) {
-            variables.put(v.getName(), v.getValue());
-        }
 
+    public String generate(IrProgram program) {
         line("openapi: 3.0.3");
         line("info:"); indent(+1);
         line("title: Kontrakt Spec");
         line("version: 0.1.0");
         indent(-1);
 
-        if (program.getConfig() != null && program.getConfig().getBaseUrl() != null) {
+        if (program.getBaseUrl() != null) {
             line("servers:"); indent(+1);
-            line("- url: " + quote(program.getConfig().getBaseUrl()));
+            line("- url: " + quote(program.getBaseUrl()));
             indent(-1);
         }
 
@@ -46,29 +44,47 @@ public class OpenApiGenerator {
         return out.toString();
     }
 
+    /**
+     * Inferred response properties: "METHOD path" -> status -> property -> JSON
+     * type ("string", "number", "boolean", "object", "array"; null: any).
+     */
+    public Map<String, Map<Integer, Map<String, String>>> inferResponseSchemas(IrProgram program) {
+        Map<String, Map<Integer, Map<String, String>>> schemas = new LinkedHashMap<>();
+        for (var pathEntry : collectOperations(program).entrySet()) {
+            for (Operation op : pathEntry.getValue().values()) {
+                for (ResponseSpec spec : op.responses.values()) {
+                    if (spec.schemaTypes.isEmpty()) continue;
+                    schemas.computeIfAbsent(op.method.toUpperCase(Locale.ROOT) + " " + op.path, k -> new LinkedHashMap<>())
+                            .put(spec.status, Collections.unmodifiableMap(spec.schemaTypes));
+                }
+            }
+        }
+        return schemas;
+    }
+
     // ---------------------------------------------------------------------
     // Collection phase
 
-    private Map<String, Map<String, Operation>> collectOperations(Program program) {
+    private Map<String, Map<String, Operation>> collectOperations(IrProgram program) {
         Map<String, Map<String, Operation>> paths = new LinkedHashMap<>();
 
-        for (Test test : program.getTests()) {
-            Operation current = null;
-            for (Statement stmt : test.getStatements()) {
-                if (stmt instanceof Request req) {
-                    String path = substitute(req.getPath());
-                    String method = req.getMethod().name().toLowerCase(Locale.ROOT);
-
-                    current = paths
-                        .computeIfAbsent(path, k -> new LinkedHashMap<>())
-                        .computeIfAbsent(method, k -> new Operation(method, path));
-
-                    current.requestContentType = pickContentType(program.getConfig(), req);
-                    current.rawRequestBody = substitute(req.getBody());
-                    if (current.requestExample.isEmpty()) {
-                        current.requestExample.putAll(parseSimpleJsonObject(current.rawRequestBody));
-                    }
-                } else if (stmt instanceof Assertion assertion && current != null) {
+        for (IrTest test : program.getTests()) {
+            for (IrExchange exchange : test.getExchanges()) {
+                IrRequest req = exchange.getRequest();
+                String path = req.getPath();
+                String method = req.getMethod().name().toLowerCase(Locale.ROOT);
+
+                Operation current = paths
+                    .computeIfAbsent(path, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(method, k -> new Operation(method, path));
+
+                current.conditional |= req.isConditional();
+                current.requestContentType = pickContentType(program.getDefaultHeaders(), req);
+                current.rawRequestBody = req.getBody();
+                if (current.requestExample.isEmpty()) {
+                    current.requestExample.putAll(parseSimpleJsonObject(current.rawRequestBody));
+                }
+                for (IrAssertion assertion : exchange.getAssertions()) {
                     current.applyAssertion(assertion);
                 }
             }
@@ -83,6 +99,18 @@ public class OpenApiGenerator {
     private void emitOperation(Operation op) {
         line("operationId: " + quote(op.operationId()));
 
+        if (op.conditional) {
+            line("parameters:"); indent(+1);
+            line("- name: If-None-Match"); indent(+1);
+            line("in: header");
+            line("required: false");
+            line("schema:"); indent(+1);
+            line("type: string");
+            indent(-1); // schema
+            indent(-1); // parameter
+            indent(-1); // parameters
+        }
+
         if (!op.requestExample.isEmpty()) {
             line("requestBody:"); indent(+1);
             line("content:"); indent(+1);
@@ -130,6 +158,7 @@ public class OpenApiGenerator {
                 if (!spec.bodyExample.isEmpty()) {
                     line("content:"); indent(+1);
                     line(op.responseContentType + ":"); indent(+1);
+                    emitSchema(spec.schemaTypes);
                     line("example:"); indent(+1);
                     emitExampleMap(spec.bodyExample);
                     indent(-1); indent(-1); indent(-1);
@@ -140,6 +169,23 @@ public class OpenApiGenerator {
         indent(-1);
     }
 
+    // No `type: object` on top: a body checked for a key may still be an array
+    private void emitSchema(Map<String, String> types) {
+        line("schema:"); indent(+1);
+        line("properties:"); indent(+1);
+        for (var entry : types.entrySet()) {
+            if (entry.getValue() == null) {
+                line(quote(entry.getKey()) + ": {}");
+            } else {
+                line(quote(entry.getKey()) + ":"); indent(+1);
+                line("type: " + entry.getValue());
+                indent(-1);
+            }
+        }
+        indent(-1); // properties
+        indent(-1); // schema
+    }
+
     private void emitExampleMap(LinkedHashMap<String, ExampleValue> values) {
         for (var entry : values.entrySet()) {
             line(entry.getKey() + ": " + entry.getValue().toYaml());
@@ -149,22 +195,13 @@ public class OpenApiGenerator {
     // ---------------------------------------------------------------------
     // Helpers
 
-    private String substitute(String text) {
-        if (text == null) return null;
-        String result = text;
-        for (var entry : variables.entrySet()) {
-            result = result.replace("$" + entry.getKey(), entry.getValue());
-        }
-        return result;
-    }
-
-    private String pickContentType(Config config, Request request) {
+    private String pickContentType(Map<String, String> defaultHeaders, IrRequest request) {
         if (request != null && request.getHeaders() != null) {
             String ct = request.getHeaders().get("Content-Type");
             if (ct != null) return ct;
         }
-        if (config != null && config.getDefaultHeaders() != null) {
-            String ct = config.getDefaultHeaders().get("Content-Type");
+        if (defaultHeaders != null) {
+            String ct = defaultHeaders.get("Content-Type");
             if (ct != null) return ct;
         }
         return "application/json";
@@ -260,6 +297,7 @@ public class OpenApiGenerator {
         final String path;
         String requestContentType = "application/json";
         String rawRequestBody;
+        boolean conditional; // sent with If-None-Match somewhere in the spec
         final LinkedHashMap<String, ExampleValue> requestExample = new LinkedHashMap<>();
         final Map<Integer, ResponseSpec> responses = new LinkedHashMap<>();
         Integer lastStatus;
@@ -270,24 +308,22 @@ public class OpenApiGenerator {
             this.path = path;
         }
 
-        void applyAssertion(Assertion assertion) {
-            switch (assertion.getType()) {
-                case STATUS -> {
-                    Integer code = assertion.getStatusCode();
-                    if (code != null) {
-                        lastStatus = code;
-                        responses.computeIfAbsent(code, ResponseSpec::new);
-                    }
-                }
-                case STATUS_RANGE -> {
-                    // Range -> default to 200 for documentation purposes
-                    lastStatus = 200;
-                    responses.computeIfAbsent(200, ResponseSpec::new);
+        void applyAssertion(IrAssertion assertion) {
+            if (assertion instanceof IrAssertion.Status a) {
+                lastStatus = a.getCode();
+                responses.computeIfAbsent(a.getCode(), ResponseSpec::new);
+            } else if (assertion instanceof IrAssertion.StatusRange) {
+                // Range -> default to 200 for documentation purposes
+                lastStatus = 200;
+                responses.computeIfAbsent(200, ResponseSpec::new);
+            } else if (assertion instanceof IrAssertion.HeaderEquals a) {
+                ensureResponse().headers.put(a.getName(), a.getValue());
+            } else if (assertion instanceof IrAssertion.HeaderContains a) {
+                ensureResponse().headers.put(a.getName(), "contains " + a.getSubstring());
+            } else if (assertion instanceof IrAssertion.BodyContains a) {
+                for (String fragment : a.getFragments()) {
+                    ensureResponse().addBodyFragment(fragment);
                 }
-                case HEADER_EQUALS -> ensureResponse().headers.put(assertion.getHeaderName(), assertion.getExpectedValue());
-                case HEADER_CONTAINS -> ensureResponse().headers.put(assertion.getHeaderName(), "contains " + assertion.getExpectedValue());
-                case BODY_CONTAINS -> ensureResponse().addBodyFragment(assertion.getExpectedValue());
-                default -> {}
             }
         }
 
@@ -309,6 +345,8 @@ public class OpenApiGenerator {
         final int status;
         final LinkedHashMap<String, ExampleValue> bodyExample = new LinkedHashMap<>();
         final Map<String, String> headers = new LinkedHashMap<>();
+        // property -> JSON schema type; null when the spec leaves it open or disagrees with itself
+        final LinkedHashMap<String, String> schemaTypes = new LinkedHashMap<>();
 
         ResponseSpec(int status) {
             this.status = status;
@@ -319,6 +357,11 @@ public class OpenApiGenerator {
             ExamplePair pair = ExamplePair.fromFragment(fragment.trim());
             if (pair != null) {
                 bodyExample.put(pair.key, pair.value);
+                String type = pair.value.schemaType();
+                if (schemaTypes.containsKey(pair.key) && !Objects.equals(schemaTypes.get(pair.key), type)) {
+                    type = null;
+                }
+                schemaTypes.put(pair.key, type);
             }
         }
 
@@ -354,14 +397,20 @@ public class OpenApiGenerator {
     }
 
     private static final class ExampleValue {
-        enum Kind { STRING, NUMBER, BOOLEAN, NULL }
+        enum Kind { STRING, NUMBER, BOOLEAN, NULL, OBJECT, ARRAY, ANY }
 
         final Kind kind;
         final String literal;
+        final Kind schemaKind; // what the value's type looks like, when it isn't a clean literal
 
         ExampleValue(Kind kind, String literal) {
+            this(kind, literal, kind);
+        }
+
+        ExampleValue(Kind kind, String literal, Kind schemaKind) {
             this.kind = kind;
             this.literal = literal;
+            this.schemaKind = schemaKind;
         }
 
         static ExampleValue fromJson(String jsonLiteral) {
@@ -372,6 +421,16 @@ public class OpenApiGenerator {
             if (trimmed.equalsIgnoreCase("null")) {
                 return new ExampleValue(Kind.NULL, "null");
             }
+            if (trimmed.isEmpty()) {
+                // `"token":` - only the key was asserted
+                return new ExampleValue(Kind.ANY, "");
+            }
+            if (trimmed.startsWith("{")) {
+                return new ExampleValue(Kind.OBJECT, trimmed);
+            }
+            if (trimmed.startsWith("[")) {
+                return new ExampleValue(Kind.ARRAY, trimmed);
+            }
             if ((trimmed.startsWith("\"") && trimmed.endsWith("\"")) || (trimmed.startsWith("'") && trimmed.endsWith("'"))) {
                 String inner = trimmed.substring(1, trimmed.length() - 1);
                 return new ExampleValue(Kind.STRING, inner.replace("\\\"", "\""));
@@ -380,18 +439,37 @@ public class OpenApiGenerator {
                 Double.parseDouble(trimmed);
                 return new ExampleValue(Kind.NUMBER, trimmed);
             } catch (NumberFormatException ex) {
-                return new ExampleValue(Kind.STRING, trimmed);
+                // A fragment running into the next member (`1, "b": 2`) or cut short (`"us`):
+                // its first character still says what type the value is
+                char first = trimmed.charAt(0);
+                Kind looksLike = first == '"' ? Kind.STRING
+                        : first == '-' || Character.isDigit(first) ? Kind.NUMBER
+                        : trimmed.startsWith("true") || trimmed.startsWith("false") ? Kind.BOOLEAN
+                        : Kind.ANY;
+                return new ExampleValue(Kind.STRING, trimmed, looksLike);
             }
         }
 
         String toYaml() {
             return switch (kind) {
-                case STRING -> yamlQuote(literal);
+                case STRING, OBJECT, ARRAY, ANY -> yamlQuote(literal);
                 case NUMBER, BOOLEAN -> literal;
                 case NULL -> "null";
             };
         }
 
+        // OpenAPI 3.0 has no null type, so null (like a bare key) constrains nothing
+        String schemaType() {
+            return switch (schemaKind) {
+                case STRING -> "string";
+                case NUMBER -> "number";
+                case BOOLEAN -> "boolean";
+                case OBJECT -> "object";
+                case ARRAY -> "array";
+                case NULL, ANY -> null;
+            };
+        }
+
         private String yamlQuote(String text) {
             if (text == null || text.isEmpty()) return "\"\"";
             if (text.contains("\"")) {
@@ -0,0 +1,207 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Latency regression gate over the samples written by runtime.Latency
+ * (-Dkontrakt.latency=...).
+ *
+ *   PerfGate save    <samples.tsv> <baseline.tsv>
+ *   PerfGate compare <baseline.tsv> <samples.tsv> [--threshold 0.30] [--alpha 0.05] [--min-samples 5]
+ *
+ * `save` stores the raw samples as the baseline. `compare` lines up every
+ * (test, request) identity from the spec in both files and flags it when its
+ * p50 or p99 grew by more than the threshold AND a one-sided Mann-Whitney U
+ * test says the new samples are slower at the given significance level - one
+ * unlucky sample is not a regression. Any regression exits with status 1.
+ */
+public class PerfGate {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("save")) {
+            save(Paths.get(args[1]), Paths.get(args[2]));
+        } else if (args.length >= 3 && args[0].equals("compare")) {
+            double threshold = 0.30, alpha = 0.05;
+            int minSamples = 5;
+            for (int i = 3; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--threshold": threshold = Double.parseDouble(args[i + 1]); break;
+                    case "--alpha": alpha = Double.parseDouble(args[i + 1]); break;
+                    case "--min-samples": minSamples = Integer.parseInt(args[i + 1]); break;
+                    default: usage();
+                }
+            }
+            boolean regressed = compare(read(Paths.get(args[1])), read(Paths.get(args[2])), threshold, alpha, minSamples);
+            if (regressed) System.exit(1);
+        } else {
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: PerfGate save <samples.tsv> <baseline.tsv>");
+        System.err.println("       PerfGate compare <baseline.tsv> <samples.tsv> [--threshold 0.30] [--alpha 0.05] [--min-samples 5]");
+        System.exit(2);
+    }
+
+    // ---------------------------------------------------------------------
+    // Modes
+
+    private static void save(Path samples, Path baseline) throws IOException {
+        Map<String, List<Long>> data = read(samples);
+        if (data.isEmpty()) {
+            System.err.println("❌ No latency samples in " + samples);
+            System.exit(1);
+        }
+        try (BufferedWriter w = Files.newBufferedWriter(baseline, StandardCharsets.UTF_8)) {
+            w.write("# test\trequest\tnanos\n");
+            for (var entry : data.entrySet()) {
+                for (long nanos : entry.getValue()) {
+                    w.write(entry.getKey() + "\t" + nanos + "\n");
+                }
+            }
+        }
+        System.out.println("✅ Saved " + data.size() + " latency distributions to " + baseline);
+    }
+
+    private static boolean compare(Map<String, List<Long>> baseline, Map<String, List<Long>> current,
+                                   double threshold, double alpha, int minSamples) {
+        boolean regressed = false;
+        System.out.printf("%-45s %10s %10s %10s %10s %8s  %s%n",
+                "test / request", "p50 was", "p50 now", "p99 was", "p99 now", "p", "");
+
+        for (var entry : current.entrySet()) {
+            String key = entry.getKey();
+            List<Long> now = entry.getValue();
+            List<Long> was = baseline.get(key);
+            String label = key.replace("\t", " ");
+            if (was == null) {
+                System.out.printf("%-45s %s%n", label, "(new, no baseline)");
+                continue;
+            }
+
+            double p50Was = percentile(was, 0.50), p50Now = percentile(now, 0.50);
+            double p99Was = percentile(was, 0.99), p99Now = percentile(now, 0.99);
+            boolean slower = p50Now > p50Was * (1 + threshold) || p99Now > p99Was * (1 + threshold);
+
+            String verdict;
+            String p = "-";
+            if (was.size() < minSamples || now.size() < minSamples) {
+                verdict = slower ? "⚠️  slower, too few samples to tell" : "";
+            } else {
+                double pValue = mannWhitneyGreater(now, was);
+                p = String.format(Locale.ROOT, "%.4f", pValue);
+                if (slower && pValue < alpha) {
+                    verdict = "❌ REGRESSION";
+                    regressed = true;
+                } else {
+                    verdict = slower ? "(slower, not significant)" : "";
+                }
+            }
+            System.out.printf("%-45s %10s %10s %10s %10s %8s  %s%n",
+                    label, millis(p50Was), millis(p50Now), millis(p99Was), millis(p99Now), p, verdict);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-45s %s%n", key.replace("\t", " "), "(not run)");
+            }
+        }
+
+        System.out.println(regressed
+                ? "❌ Latency regressed beyond " + Math.round(threshold * 100) + "%"
+                : "✅ No latency regression beyond " + Math.round(threshold * 100) + "%");
+        return regressed;
+    }
+
+    // ---------------------------------------------------------------------
+    // Statistics
+
+    // Nearest-rank percentile
+    static double percentile(List<Long> samples, double q) {
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(q * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    /**
+     * One-sided Mann-Whitney U test: the p-value for "x tends to be larger
+     * than y", using the normal approximation with tie and continuity
+     * correction.
+     */
+    static double mannWhitneyGreater(List<Long> x, List<Long> y) {
+        int n1 = x.size(), n2 = y.size(), n = n1 + n2;
+        long[] all = new long[n];
+        boolean[] fromX = new boolean[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i < n1 ? x.get(i) : y.get(i - n1);
+            fromX[i] = i < n1;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> all[i]));
+
+        // Average ranks over ties
+        double rankSumX = 0, tieTerm = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j + 1 < n && all[order[j + 1]] == all[order[i]]) j++;
+            double rank = (i + j) / 2.0 + 1;
+            for (int k = i; k <= j; k++) {
+                if (fromX[order[k]]) rankSumX += rank;
+            }
+            int t = j - i + 1;
+            tieTerm += (double) t * t * t - t;
+            i = j + 1;
+        }
+
+        double u = rankSumX - n1 * (n1 + 1) / 2.0;
+        double mean = n1 * (double) n2 / 2.0;
+        double variance = n1 * (double) n2 / 12.0 * ((n + 1) - tieTerm / ((double) n * (n - 1)));
+        if (variance <= 0) return 1.0; // every sample identical
+        double z = (u - mean - 0.5) / Math.sqrt(variance);
+        return 1 - normalCdf(z);
+    }
+
+    private static double normalCdf(double z) {
+        return 0.5 * (1 + erf(z / Math.sqrt(2)));
+    }
+
+    // Abramowitz & Stegun 7.1.26 (|error| < 1.5e-7)
+    private static double erf(double x) {
+        double sign = Math.signum(x);
+        x = Math.abs(x);
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        return sign * (1 - poly * Math.exp(-x * x));
+    }
+
+    // ---------------------------------------------------------------------
+    // Helpers
+
+    // "test<TAB>request" -> samples in nanos
+    private static Map<String, List<Long>> read(Path file) throws IOException {
+        Map<String, List<Long>> data = new TreeMap<>();
+        if (!Files.exists(file)) {
+            System.err.println("❌ File not found: " + file);
+            System.exit(1);
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int last = line.lastIndexOf('\t');
+            if (last <= 0) continue;
+            try {
+                long nanos = Long.parseLong(line.substring(last + 1).trim());
+                data.computeIfAbsent(line.substring(0, last), k -> new ArrayList<>()).add(nanos);
+            } catch (NumberFormatException e) {
+                // skip malformed lines
+            }
+        }
+        return data;
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,370 @@
+import ir.*;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Generates a self-contained stub server (GeneratedStubServer.java) from the
+ * Kontrakt IR. Every request in the spec gets a canned response built from
+ * the assertions that follow it - the same status/header/body information the
+ * OpenApiGenerator collects - so the generated tests can run without booting
+ * the Spring backend.
+ *
+ * The server runs on the JDK's built-in com.sun.net.httpserver.HttpServer and
+ * serves each exchange on a virtual thread when the JDK has them (21+),
+ * falling back to a cached thread pool otherwise.
+ *
+ * Successful GETs with a body carry an ETag (and Cache-Control: no-cache),
+ * and a matching If-None-Match gets a 304, so conditional requests in the
+ * spec behave like they do against the backend. Bodies are gzip-compressed
+ * for clients that accept it, and gzip request bodies are decompressed
+ * before matching.
+ *
+ * The server has no state: a request the spec expects to answer with
+ * different statuses (a GET that is 200 before a DELETE and 404 after it)
+ * always gets the first one declared. Such requests are listed in
+ * {@link #getWarnings()}.
+ */
+public class StubServerGenerator {
+
+    private final StringBuilder out = new StringBuilder();
+    private final List<String> warnings = new ArrayList<>();
+
+    /** Problems found by the last {@link #generate} that the stub can't reproduce. */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public String generate(IrProgram program) {
+        out.setLength(0);
+        warnings.clear();
+        List<Stub> stubs = collectStubs(program);
+        int port = defaultPort(program.getBaseUrl());
+
+        out.append("import com.sun.net.httpserver.*;\n");
+        out.append("import java.io.*;\n");
+        out.append("import java.net.*;\n");
+        out.append("import java.nio.charset.StandardCharsets;\n");
+        out.append("import java.util.*;\n");
+        out.append("import java.util.concurrent.*;\n");
+        out.append("import java.util.zip.*;\n\n");
+
+        out.append("public class GeneratedStubServer {\n");
+        out.append("  record Stub(String requestBody, int status, String[] headers, byte[] body, String etag) {}\n\n");
+        out.append("  // \"METHOD path\" -> variants, matched on the (whitespace-free) request body\n");
+        out.append("  static final Map<String, List<Stub>> STUBS = new HashMap<>();\n\n");
+
+        out.append("  static {\n");
+        for (Stub stub : stubs) {
+            out.append("    stub(\"" + escapeJava(stub.method + " " + stub.path) + "\", ");
+            out.append(stub.requestBody == null ? "null" : "\"" + escapeJava(stub.requestBody) + "\"");
+            out.append(", " + stub.status() + ",\n");
+            out.append("      new String[] {");
+            boolean first = true;
+            for (var header : stub.headers().entrySet()) {
+                if (!first) out.append(", ");
+                out.append("\"" + escapeJava(header.getKey()) + "\", \"" + escapeJava(header.getValue()) + "\"");
+                first = false;
+            }
+            out.append("},\n");
+            out.append("      \"" + escapeJava(stub.body()) + "\", ");
+            out.append(stub.etag == null ? "null" : "\"" + escapeJava(stub.etag) + "\"");
+            out.append(");\n");
+        }
+        out.append("  }\n\n");
+
+        out.append("  static void stub(String key, String requestBody, int status, String[] headers, String body, String etag) {\n");
+        out.append("    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);\n");
+        out.append("    if (etag == null && key.startsWith(\"GET \") && status == 200 && bytes.length > 0) {\n");
+        out.append("      CRC32 crc = new CRC32();\n");
+        out.append("      crc.update(bytes);\n");
+        out.append("      etag = \"\\\"\" + Long.toHexString(crc.getValue()) + \"\\\"\";\n");
+        out.append("    }\n");
+        out.append("    STUBS.computeIfAbsent(key, k -> new ArrayList<>())\n");
+        out.append("      .add(new Stub(requestBody, status, headers, bytes, etag));\n");
+        out.append("  }\n\n");
+
+        out.append("  public static void main(String[] args) throws IOException {\n");
+        out.append("    int port = args.length > 0 ? Integer.parseInt(args[0]) : " + port + ";\n");
+        out.append("    HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);\n");
+        out.append("    server.createContext(\"/\", GeneratedStubServer::handle);\n");
+        out.append("    server.setExecutor(executor());\n");
+        out.append("    server.start();\n");
+        out.append("    System.out.println(\"Stub server listening on http://localhost:\" + port + \" (\" + STUBS.size() + \" routes)\");\n");
+        out.append("  }\n\n");
+
+        out.append("  // One virtual thread per exchange on JDK 21+, a plain cached pool before that\n");
+        out.append("  static ExecutorService executor() {\n");
+        out.append("    try {\n");
+        out.append("      return (ExecutorService) Executors.class.getMethod(\"newVirtualThreadPerTaskExecutor\").invoke(null);\n");
+        out.append("    } catch (ReflectiveOperationException e) {\n");
+        out.append("      return Executors.newCachedThreadPool();\n");
+        out.append("    }\n");
+        out.append("  }\n\n");
+
+        out.append("  static void handle(HttpExchange ex) throws IOException {\n");
+        out.append("    try (ex) {\n");
+        out.append("      URI uri = ex.getRequestURI();\n");
+        out.append("      String target = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + \"?\" + uri.getRawQuery();\n");
+        out.append("      InputStream in = ex.getRequestBody();\n");
+        out.append("      if (\"gzip\".equalsIgnoreCase(ex.getRequestHeaders().getFirst(\"Content-Encoding\"))) in = new GZIPInputStream(in);\n");
+        out.append("      String requestBody = new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll(\"\\\\s+\", \"\");\n");
+        out.append("      List<Stub> variants = STUBS.get(ex.getRequestMethod() + \" \" + target);\n");
+        out.append("      if (variants == null) {\n");
+        out.append("        byte[] error = (\"{\\\"error\\\": \\\"No stub for \" + ex.getRequestMethod() + \" \" + target + \"\\\"}\").getBytes(StandardCharsets.UTF_8);\n");
+        out.append("        ex.getResponseHeaders().set(\"Content-Type\", \"application/json\");\n");
+        out.append("        ex.sendResponseHeaders(404, error.length);\n");
+        out.append("        ex.getResponseBody().write(error);\n");
+        out.append("        return;\n");
+        out.append("      }\n");
+        out.append("      // No body match: the first declared variant, whatever its status\n");
+        out.append("      Stub stub = variants.get(0);\n");
+        out.append("      for (Stub candidate : variants) {\n");
+        out.append("        if (requestBody.equals(candidate.requestBody())) { stub = candidate; break; }\n");
+        out.append("      }\n");
+        out.append("      for (int i = 0; i < stub.headers().length; i += 2) {\n");
+        out.append("        ex.getResponseHeaders().set(stub.headers()[i], stub.headers()[i + 1]);\n");
+        out.append("      }\n");
+        out.append("      if (stub.etag() != null) {\n");
+        out.append("        ex.getResponseHeaders().set(\"ETag\", stub.etag());\n");
+        out.append("        ex.getResponseHeaders().set(\"Cache-Control\", \"no-cache\");\n");
+        out.append("        if (matches(ex.getRequestHeaders().getFirst(\"If-None-Match\"), stub.etag())) {\n");
+        out.append("          ex.sendResponseHeaders(304, -1);\n");
+        out.append("          return;\n");
+        out.append("        }\n");
+        out.append("      }\n");
+        out.append("      byte[] body = stub.body();\n");
+        out.append("      String accept = ex.getRequestHeaders().getFirst(\"Accept-Encoding\");\n");
+        out.append("      if (body.length > 0 && accept != null && accept.toLowerCase(Locale.ROOT).contains(\"gzip\")) {\n");
+        out.append("        body = gzip(body);\n");
+        out.append("        ex.getResponseHeaders().set(\"Content-Encoding\", \"gzip\");\n");
+        out.append("        ex.getResponseHeaders().set(\"Vary\", \"Accept-Encoding\");\n");
+        out.append("      }\n");
+        out.append("      ex.sendResponseHeaders(stub.status(), body.length == 0 ? -1 : body.length);\n");
+        out.append("      if (body.length > 0) ex.getResponseBody().write(body);\n");
+        out.append("    }\n");
+        out.append("  }\n\n");
+
+        out.append("  static byte[] gzip(byte[] body) throws IOException {\n");
+        out.append("    ByteArrayOutputStream bytes = new ByteArrayOutputStream();\n");
+        out.append("    try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {\n");
+        out.append("      gz.write(body);\n");
+        out.append("    }\n");
+        out.append("    return bytes.toByteArray();\n");
+        out.append("  }\n\n");
+
+        out.append("  // If-None-Match: *, or a list of (possibly weak) ETags\n");
+        out.append("  static boolean matches(String ifNoneMatch, String etag) {\n");
+        out.append("    if (ifNoneMatch == null) return false;\n");
+        out.append("    for (String candidate : ifNoneMatch.split(\",\")) {\n");
+        out.append("      String tag = candidate.trim();\n");
+        out.append("      if (tag.startsWith(\"W/\")) tag = tag.substring(2);\n");
+        out.append("      if (tag.equals(\"*\") || tag.equals(etag)) return true;\n");
+        out.append("    }\n");
+        out.append("    return false;\n");
+        out.append("  }\n");
+        out.append("}\n");
+
+        return out.toString();
+    }
+
+    // ---------------------------------------------------------------------
+    // Collection phase
+
+    private List<Stub> collectStubs(IrProgram program) {
+        // Identical requests with the same expected status share one stub, so
+        // the union of their assertions has to hold for its response
+        Map<String, Stub> stubs = new LinkedHashMap<>();
+        // Conditional GETs are answered by the server from the plain stub of
+        // the same path; they only pin its ETag when the spec names one and
+        // expects a 304 for it
+        List<IrExchange> conditional = new ArrayList<>();
+
+        for (IrTest test : program.getTests()) {
+            for (IrExchange exchange : test.getExchanges()) {
+                IrRequest req = exchange.getRequest();
+                if (req.isConditional()) {
+                    conditional.add(exchange);
+                    continue;
+                }
+                Stub stub = new Stub(req.getMethod().name(), stubPath(req.getPath()));
+                stub.requestBody = req.getBody() == null ? null : req.getBody().replaceAll("\\s+", "");
+                for (IrAssertion assertion : exchange.getAssertions()) {
+                    stub.applyAssertion(assertion);
+                }
+                addStub(stubs, stub);
+            }
+        }
+
+        for (IrExchange exchange : conditional) {
+            IrRequest req = exchange.getRequest();
+            Stub expected = new Stub(req.getMethod().name(), stubPath(req.getPath()));
+            for (IrAssertion assertion : exchange.getAssertions()) {
+                expected.applyAssertion(assertion);
+            }
+            boolean served = false;
+            for (Stub stub : stubs.values()) {
+                if (stub.method.equals(expected.method) && stub.path.equals(expected.path) && stub.status() == 200) {
+                    if (expects304(exchange)) {
+                        if (req.getIfNoneMatch() != null) stub.etag = req.getIfNoneMatch();
+                    } else {
+                        stub.mergeFrom(expected); // a full 200 like the plain GET
+                    }
+                    served = true;
+                }
+            }
+            if (!served) {
+                // Only ever requested conditionally: stub the response the spec expects
+                addStub(stubs, expected);
+            }
+        }
+
+        warnAboutStatusVariants(stubs.values());
+        return new ArrayList<>(stubs.values());
+    }
+
+    // The same request with different expected statuses: the server can only serve the first
+    private void warnAboutStatusVariants(Collection<Stub> stubs) {
+        Map<String, List<Integer>> statuses = new LinkedHashMap<>();
+        for (Stub stub : stubs) {
+            String request = stub.method + " " + stub.path + (stub.requestBody == null ? "" : " " + stub.requestBody);
+            statuses.computeIfAbsent(request, k -> new ArrayList<>()).add(stub.status());
+        }
+        statuses.forEach((request, codes) -> {
+            if (codes.size() > 1) {
+                warnings.add(request + " is expected to answer " + codes + "; the stub always answers " + codes.get(0));
+            }
+        });
+    }
+
+    // A fixed ETag is only the current one when the spec expects "not modified"
+    private boolean expects304(IrExchange exchange) {
+        for (IrAssertion assertion : exchange.getAssertions()) {
+            if (assertion instanceof IrAssertion.Status a && a.getCode() == 304) return true;
+        }
+        return false;
+    }
+
+    private void addStub(Map<String, Stub> stubs, Stub stub) {
+        Stub existing = stubs.putIfAbsent(stub.key(), stub);
+        if (existing != null) existing.mergeFrom(stub);
+    }
+
+    // ---------------------------------------------------------------------
+    // Helpers
+
+    private String stubPath(String path) {
+        if (path.startsWith("/")) return path;
+        try {
+            URI uri = URI.create(path);
+            String rawPath = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return uri.getRawQuery() == null ? rawPath : rawPath + "?" + uri.getRawQuery();
+        } catch (IllegalArgumentException e) {
+            return path;
+        }
+    }
+
+    private int defaultPort(String baseUrl) {
+        if (baseUrl != null) {
+            try {
+                int port = URI.create(baseUrl).getPort();
+                if (port != -1) return port;
+            } catch (IllegalArgumentException e) {
+                // fall through to the default
+            }
+        }
+        return 8080;
+    }
+
+    private String escapeJava(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+
+    // ---------------------------------------------------------------------
+    // Data structures
+
+    private static final class Stub {
+        final String method;
+        final String path;
+        String requestBody;
+        Integer status;
+        String etag; // null: derived from the body for 200 GETs
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final List<String> bodyFragments = new ArrayList<>();
+
+        Stub(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        void applyAssertion(IrAssertion assertion) {
+            if (assertion instanceof IrAssertion.Status a) {
+                status = a.getCode();
+            } else if (assertion instanceof IrAssertion.StatusRange a) {
+                // Prefer 200 when the range allows it, like the OpenAPI output
+                status = a.includes(200) ? 200 : a.getMin();
+            } else if (assertion instanceof IrAssertion.HeaderEquals a) {
+                headers.put(a.getName(), a.getValue());
+            } else if (assertion instanceof IrAssertion.HeaderContains a) {
+                headers.putIfAbsent(a.getName(), headerValueContaining(a.getName(), a.getSubstring()));
+            } else if (assertion instanceof IrAssertion.BodyContains a) {
+                bodyFragments.addAll(a.getFragments());
+            }
+        }
+
+        void mergeFrom(Stub other) {
+            other.headers.forEach(headers::putIfAbsent);
+            bodyFragments.addAll(other.bodyFragments);
+        }
+
+        String key() {
+            return method + " " + path + " " + requestBody + " " + status();
+        }
+
+        int status() {
+            return status != null ? status : 200;
+        }
+
+        Map<String, String> headers() {
+            if (!headers.isEmpty() || !body().isEmpty()) {
+                Map<String, String> result = new LinkedHashMap<>();
+                if (!body().isEmpty()) result.put("Content-Type", "application/json");
+                result.putAll(headers);
+                return result;
+            }
+            return headers;
+        }
+
+        // A body that contains every asserted fragment; fragments are usually
+        // "key": value pairs, so joining them yields a JSON object. A bare key
+        // (`"token":`) or a lone string (`"error"`) gets a null value, so the
+        // body stays valid JSON for --validate
+        String body() {
+            if (bodyFragments.isEmpty()) return "";
+            StringBuilder body = new StringBuilder();
+            for (String fragment : bodyFragments) {
+                String flat = fragment.replaceAll("\\s+", "");
+                if (body.toString().replaceAll("\\s+", "").contains(flat)) continue;
+                String member = fragment.trim();
+                if (member.endsWith(":")) {
+                    member += " null";
+                } else if (member.matches("\"(?:[^\"\\\\]|\\\\.)*\"")) {
+                    member += ": null";
+                }
+                body.append(body.length() == 0 ? "{ " : ", ").append(member);
+            }
+            return body.append(" }").toString();
+        }
+
+        private static String headerValueContaining(String name, String substring) {
+            if (name.equalsIgnoreCase("Content-Type") && "application/json".contains(substring)) {
+                return "application/json";
+            }
+            return substring;
+        }
+    }
+}
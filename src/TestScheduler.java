@@ -0,0 +1,97 @@
+import ast.HttpMethod;
+import ir.*;
+import java.util.*;
+
+/**
+ * Groups the tests of a program into ordered "waves" that are safe to run
+ * concurrently. Two tests conflict when they touch the same resource (or a
+ * parent/child of it) and at least one of them writes to it, e.g. a
+ * PUT /api/users/42 and a GET /api/users/42. Conflicting tests always land in
+ * different waves, in their declared order; everything inside a wave is free
+ * to run in parallel.
+ */
+public class TestScheduler {
+
+    public List<List<IrTest>> schedule(IrProgram program) {
+        List<IrTest> tests = program.getTests();
+        List<List<Access>> footprints = new ArrayList<>();
+        for (IrTest test : tests) {
+            footprints.add(footprint(test));
+        }
+
+        // wave[i] = one past the latest wave of any earlier test it conflicts with
+        int[] wave = new int[tests.size()];
+        int waveCount = 0;
+        for (int i = 0; i < tests.size(); i++) {
+            int w = 0;
+            for (int j = 0; j < i; j++) {
+                if (wave[j] + 1 > w && conflicts(footprints.get(i), footprints.get(j))) {
+                    w = wave[j] + 1;
+                }
+            }
+            wave[i] = w;
+            waveCount = Math.max(waveCount, w + 1);
+        }
+
+        List<List<IrTest>> waves = new ArrayList<>();
+        for (int w = 0; w < waveCount; w++) {
+            waves.add(new ArrayList<>());
+        }
+        for (int i = 0; i < tests.size(); i++) {
+            waves.get(wave[i]).add(tests.get(i));
+        }
+        return waves;
+    }
+
+    // ---------------------------------------------------------------------
+    // Conflict analysis
+
+    private List<Access> footprint(IrTest test) {
+        List<Access> accesses = new ArrayList<>();
+        for (IrExchange exchange : test.getExchanges()) {
+            IrRequest req = exchange.getRequest();
+            boolean write = req.getMethod() != HttpMethod.GET;
+            accesses.add(new Access(resource(req.getPath()), write));
+        }
+        return accesses;
+    }
+
+    private boolean conflicts(List<Access> a, List<Access> b) {
+        for (Access x : a) {
+            for (Access y : b) {
+                if ((x.write || y.write) && overlaps(x.resource, y.resource)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Same resource, or one is a parent collection of the other
+    // (/api/users vs /api/users/42)
+    private boolean overlaps(String a, String b) {
+        if (a.equals(b)) return true;
+        return a.startsWith(b + "/") || b.startsWith(a + "/");
+    }
+
+    // Strip query string and trailing slash so /api/users/42?x=1 == /api/users/42/
+    private String resource(String path) {
+        String result = path;
+        int q = result.indexOf('?');
+        if (q != -1) result = result.substring(0, q);
+        while (result.length() > 1 && result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    private static final class Access {
+        final String resource;
+        final boolean write;
+
+        Access(String resource, boolean write) {
+            this.resource = resource;
+            this.write = write;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import ir.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Deterministically splits a program's tests across N shards (JVMs or CI
+ * nodes), so every shard computes the same partition without talking to the
+ * others.
+ *
+ * Without timing data a test goes to shard mix(crc32(name)) % N. With a
+ * durations file from an earlier run (see MergeShardReports) the tests are
+ * balanced instead: longest first, each onto the currently lightest shard.
+ */
+public class TestSharder {
+
+    private final int index; // 1-based
+    private final int count;
+    private final Map<String, Double> durations;
+
+    public TestSharder(int index, int count, Map<String, Double> durations) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("shard must be i/n with 1 <= i <= n, got " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.durations = durations != null ? durations : Map.of();
+    }
+
+    // Parses "i/n"
+    public static TestSharder parse(String spec, Map<String, Double> durations) {
+        String[] parts = spec.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("shard must look like i/n, got " + spec);
+        }
+        try {
+            return new TestSharder(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), durations);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("shard must look like i/n, got " + spec);
+        }
+    }
+
+    public IrProgram select(IrProgram program) {
+        Set<String> mine = durations.isEmpty() ? byHash(program.getTests()) : byDuration(program.getTests());
+
+        // Keep the declared order inside the shard
+        List<IrTest> tests = new ArrayList<>();
+        for (IrTest test : program.getTests()) {
+            if (mine.contains(test.getName())) tests.add(test);
+        }
+        return new IrProgram(program.getBaseUrl(), program.getDefaultHeaders(), program.getVariables(), tests);
+    }
+
+    private Set<String> byHash(List<IrTest> tests) {
+        Set<String> mine = new HashSet<>();
+        for (IrTest test : tests) {
+            CRC32 crc = new CRC32();
+            crc.update(test.getName().getBytes(StandardCharsets.UTF_8));
+            // Fibonacci-mix the checksum so small suites don't clump on one shard
+            long mixed = (crc.getValue() * 0x9E3779B97F4A7C15L) >>> 32;
+            if (mixed % count == index - 1) mine.add(test.getName());
+        }
+        return mine;
+    }
+
+    private Set<String> byDuration(List<IrTest> tests) {
+        // Tests without history count as an average one
+        double fallback = durations.values().stream().mapToDouble(Double::doubleValue).average().orElse(1.0);
+
+        List<IrTest> ordered = new ArrayList<>(tests);
+        ordered.sort(Comparator
+                .comparingDouble((IrTest t) -> -durations.getOrDefault(t.getName(), fallback))
+                .thenComparing(IrTest::getName));
+
+        double[] load = new double[count];
+        Set<String> mine = new HashSet<>();
+        for (IrTest test : ordered) {
+            int lightest = 0;
+            for (int s = 1; s < count; s++) {
+                if (load[s] < load[lightest]) lightest = s;
+            }
+            load[lightest] += durations.getOrDefault(test.getName(), fallback);
+            if (lightest == index - 1) mine.add(test.getName());
+        }
+        return mine;
+    }
+
+    // "TestName<TAB>seconds" per line, as written by MergeShardReports
+    public static Map<String, Double> readDurations(Path file) throws IOException {
+        Map<String, Double> durations = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length != 2 || line.startsWith("#")) continue;
+            try {
+                durations.put(parts[0], Double.parseDouble(parts[1]));
+            } catch (NumberFormatException e) {
+                // skip malformed lines
+            }
+        }
+        return durations;
+    }
+}
@@ -6,7 +6,8 @@ public class Assertion implements Statement {
         STATUS_RANGE,        //expect status in 200..299
         HEADER_EQUALS,       //expect header "Content-Type" = "application/json"
         HEADER_CONTAINS,     //expect header "Content-Type" contains "application/json"
-        BODY_CONTAINS        //expect body contains "text"
+        BODY_CONTAINS,       //expect body contains "text"
+        COMPRESSED_SIZE_BELOW //expect compressed size < 20kb
     }
     
     private Type type;
@@ -15,6 +16,7 @@ public class Assertion implements Statement {
     private Integer maxStatus; // for range upper bound
     private String headerName;       //for HEADER_*
     private String expectedValue;    //for equals/contains
+    private Long maxBytes;           //for COMPRESSED_SIZE_BELOW (exclusive)
     
     //Constructor for STATUS assertion
     public static Assertion status(int code) {
@@ -58,6 +60,14 @@ public class Assertion implements Statement {
         return a;
     }
     
+    //Constructor for COMPRESSED_SIZE_BELOW
+    public static Assertion compressedSizeBelow(long bytes) {
+        Assertion a = new Assertion();
+        a.type = Type.COMPRESSED_SIZE_BELOW;
+        a.maxBytes = bytes;
+        return a;
+    }
+    
     //Private constructor - use only the factory methods in here
     private Assertion() {}
     
@@ -68,4 +78,5 @@ public class Assertion implements Statement {
     public Integer getMaxStatus() { return maxStatus; }
     public String getHeaderName() { return headerName; }
     public String getExpectedValue() { return expectedValue; }
+    public Long getMaxBytes() { return maxBytes; }
 }
\ No newline at end of file
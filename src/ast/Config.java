@@ -5,6 +5,7 @@ import java.util.*;
 public class Config {
     private String baseUrl;
     private Map<String, String> defaultHeaders;
+    private String acceptEncoding; // accept_encoding = "gzip, deflate";
     
     public Config() {
         this.defaultHeaders = new HashMap<>();
@@ -18,6 +19,11 @@ public class Config {
         this.defaultHeaders.put(key, value);
     }
     
+    public void setAcceptEncoding(String acceptEncoding) {
+        this.acceptEncoding = acceptEncoding;
+    }
+    
     public String getBaseUrl() { return baseUrl; }
+    public String getAcceptEncoding() { return acceptEncoding; }
     public Map<String, String> getDefaultHeaders() { return defaultHeaders; }
 }
\ No newline at end of file
@@ -7,6 +7,11 @@ public class Request implements Statement {
     private String path;
     private Map<String, String> headers;
     private String body;
+    private String bodyFile;        // streamed from disk instead of inlined
+    private boolean bodyTemplated;  // substitute $vars in bodyFile while streaming
+    private boolean bodyGzip;       // send the body with Content-Encoding: gzip
+    private String ifNoneMatch;     // GET "..." if-none-match "\"etag\"";
+    private boolean ifNoneMatchPrevious; // GET "..." if-none-match previous;
     
     public Request(HttpMethod method, String path) {
         this.method = method;
@@ -19,6 +24,11 @@ public class Request implements Statement {
     public String getPath() { return path; }
     public Map<String, String> getHeaders() { return headers; }
     public String getBody() { return body; }
+    public String getBodyFile() { return bodyFile; }
+    public boolean isBodyTemplated() { return bodyTemplated; }
+    public boolean isBodyGzip() { return bodyGzip; }
+    public String getIfNoneMatch() { return ifNoneMatch; }
+    public boolean isIfNoneMatchPrevious() { return ifNoneMatchPrevious; }
     
     public void addHeader(String key, String value) {
         this.headers.put(key, value);
@@ -28,9 +38,38 @@ public class Request implements Statement {
         this.body = body;
     }
 
+    public void setBodyFile(String path, boolean templated) {
+        this.bodyFile = path;
+        this.bodyTemplated = templated;
+    }
+
+    // Conditional GET with a fixed ETag
+    public void setIfNoneMatch(String etag) {
+        this.ifNoneMatch = etag;
+        this.ifNoneMatchPrevious = false;
+    }
+
+    // Conditional GET with the ETag of the previous response in the same test
+    public void setIfNoneMatchPrevious() {
+        this.ifNoneMatch = null;
+        this.ifNoneMatchPrevious = true;
+    }
+
+    public void setBody(RequestBody body) {
+        if (body.isFile()) {
+            setBodyFile(body.getFilePath(), body.isTemplated());
+        } else {
+            setBody(body.getContent());
+        }
+        this.bodyGzip = body.isGzip();
+    }
+
     @Override
     public String toString() {
         return "Request(" + method + " " + path + 
-               (body != null ? " with body" : "") + ")";
+               (body != null ? " with body" : "") +
+               (bodyFile != null ? " with body from " + bodyFile : "") +
+               (ifNoneMatchPrevious ? " if-none-match previous" : "") +
+               (ifNoneMatch != null ? " if-none-match " + ifNoneMatch : "") + ")";
     }
 }
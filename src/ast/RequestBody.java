@@ -0,0 +1,37 @@
+package ast;
+
+// What follows "body =" in a request block: an inline string or a file
+public class RequestBody {
+    private String content;     // inline body
+    private String filePath;    // body = file "payloads/bulk.json";
+    private boolean templated;  // ... templated; -> $vars substituted while streaming
+    private boolean gzip;       // ... gzip; -> sent with Content-Encoding: gzip
+
+    public static RequestBody inline(String content) {
+        RequestBody b = new RequestBody();
+        b.content = content;
+        return b;
+    }
+
+    public static RequestBody file(String path, boolean templated) {
+        RequestBody b = new RequestBody();
+        b.filePath = path;
+        b.templated = templated;
+        return b;
+    }
+
+    // Marks the body to be sent gzip-compressed
+    public RequestBody gzip() {
+        this.gzip = true;
+        return this;
+    }
+
+    //Private constructor - use only the factory methods in here
+    private RequestBody() {}
+
+    public boolean isFile() { return filePath != null; }
+    public String getContent() { return content; }
+    public String getFilePath() { return filePath; }
+    public boolean isTemplated() { return templated; }
+    public boolean isGzip() { return gzip; }
+}
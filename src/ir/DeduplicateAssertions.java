@@ -0,0 +1,12 @@
+package ir;
+
+import java.util.*;
+
+// Drops repeats of the same assertion on the same response, keeping the first
+public class DeduplicateAssertions implements Pass {
+
+    @Override
+    public List<IrAssertion> run(List<IrAssertion> assertions) {
+        return new ArrayList<>(new LinkedHashSet<>(assertions));
+    }
+}
@@ -0,0 +1,55 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Drops assertions that another assertion on the same response already
+ * implies:
+ *  - status in 200..299    when   status = 200 is also asserted
+ *  - header "X" contains v when   header "X" = w with w containing v,
+ *                          or     header "X" contains w with w containing v
+ *  - compressed size < n   when   compressed size < m with m < n is also asserted
+ * If the stronger assertion passes the weaker one must too, and if it fails
+ * the test fails either way.
+ */
+public class DropSubsumedAssertions implements Pass {
+
+    @Override
+    public List<IrAssertion> run(List<IrAssertion> assertions) {
+        List<IrAssertion> result = new ArrayList<>();
+        for (IrAssertion a : assertions) {
+            if (!subsumed(a, assertions)) result.add(a);
+        }
+        return result;
+    }
+
+    private boolean subsumed(IrAssertion weak, List<IrAssertion> all) {
+        for (IrAssertion strong : all) {
+            if (strong == weak) continue;
+            if (weak instanceof IrAssertion.StatusRange range
+                    && strong instanceof IrAssertion.Status status
+                    && range.includes(status.getCode())) {
+                return true;
+            }
+            if (weak instanceof IrAssertion.CompressedSizeBelow loose
+                    && strong instanceof IrAssertion.CompressedSizeBelow tight
+                    && tight.getMaxBytes() < loose.getMaxBytes()) {
+                return true;
+            }
+            if (weak instanceof IrAssertion.HeaderContains contains) {
+                if (strong instanceof IrAssertion.HeaderEquals equals
+                        && equals.getName().equalsIgnoreCase(contains.getName())
+                        && equals.getValue().contains(contains.getSubstring())) {
+                    return true;
+                }
+                if (strong instanceof IrAssertion.HeaderContains other
+                        && other.getName().equalsIgnoreCase(contains.getName())
+                        && other.getSubstring().length() > contains.getSubstring().length()
+                        && other.getSubstring().contains(contains.getSubstring())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
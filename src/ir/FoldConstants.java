@@ -0,0 +1,33 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Folds assertions whose outcome or simpler form is known at compile time:
+ *  - status in 200..200        -> status = 200
+ *  - header "X" contains ""    -> dropped (always true)
+ *  - body contains "" / "  "   -> dropped (always true, matching ignores whitespace)
+ */
+public class FoldConstants implements Pass {
+
+    @Override
+    public List<IrAssertion> run(List<IrAssertion> assertions) {
+        List<IrAssertion> result = new ArrayList<>();
+        for (IrAssertion a : assertions) {
+            if (a instanceof IrAssertion.StatusRange r && r.getMin() == r.getMax()) {
+                result.add(new IrAssertion.Status(r.getMin()));
+            } else if (a instanceof IrAssertion.HeaderContains h && h.getSubstring().isEmpty()) {
+                continue;
+            } else if (a instanceof IrAssertion.BodyContains b) {
+                List<String> kept = new ArrayList<>();
+                for (String fragment : b.getFragments()) {
+                    if (!IrAssertion.BodyContains.normalize(fragment).isEmpty()) kept.add(fragment);
+                }
+                if (!kept.isEmpty()) result.add(new IrAssertion.BodyContains(kept));
+            } else {
+                result.add(a);
+            }
+        }
+        return result;
+    }
+}
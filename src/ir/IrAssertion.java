@@ -0,0 +1,125 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Typed assertion nodes. Each kind is its own class with value semantics
+ * (equals/hashCode), which is what lets the passes compare, deduplicate and
+ * merge them.
+ */
+public abstract class IrAssertion {
+
+    // Private constructor - only the nested kinds below extend this
+    private IrAssertion() {}
+
+    // expect status = 200;
+    public static final class Status extends IrAssertion {
+        private final int code;
+
+        public Status(int code) { this.code = code; }
+
+        public int getCode() { return code; }
+
+        @Override public boolean equals(Object o) { return o instanceof Status s && s.code == code; }
+        @Override public int hashCode() { return Integer.hashCode(code); }
+        @Override public String toString() { return "status = " + code; }
+    }
+
+    // expect status in 200..299;
+    public static final class StatusRange extends IrAssertion {
+        private final int min;
+        private final int max;
+
+        public StatusRange(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getMin() { return min; }
+        public int getMax() { return max; }
+
+        public boolean includes(int code) { return min <= code && code <= max; }
+
+        @Override public boolean equals(Object o) { return o instanceof StatusRange r && r.min == min && r.max == max; }
+        @Override public int hashCode() { return Objects.hash(min, max); }
+        @Override public String toString() { return "status in " + min + ".." + max; }
+    }
+
+    // expect header "X" = "v";
+    public static final class HeaderEquals extends IrAssertion {
+        private final String name;
+        private final String value;
+
+        public HeaderEquals(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() { return name; }
+        public String getValue() { return value; }
+
+        // Header names are case-insensitive
+        @Override public boolean equals(Object o) {
+            return o instanceof HeaderEquals h && h.name.equalsIgnoreCase(name) && h.value.equals(value);
+        }
+        @Override public int hashCode() { return Objects.hash(name.toLowerCase(Locale.ROOT), value); }
+        @Override public String toString() { return "header " + name + " = " + value; }
+    }
+
+    // expect header "X" contains "v";
+    public static final class HeaderContains extends IrAssertion {
+        private final String name;
+        private final String substring;
+
+        public HeaderContains(String name, String substring) {
+            this.name = name;
+            this.substring = substring;
+        }
+
+        public String getName() { return name; }
+        public String getSubstring() { return substring; }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof HeaderContains h && h.name.equalsIgnoreCase(name) && h.substring.equals(substring);
+        }
+        @Override public int hashCode() { return Objects.hash(name.toLowerCase(Locale.ROOT), substring); }
+        @Override public String toString() { return "header " + name + " contains " + substring; }
+    }
+
+    /**
+     * expect body contains "a"; expect body contains "b"; ...
+     * Matching is whitespace-insensitive, so one node can carry several
+     * fragments that are all checked against a single normalized body.
+     */
+    public static final class BodyContains extends IrAssertion {
+        private final List<String> fragments; // as written in the spec
+
+        public BodyContains(List<String> fragments) {
+            this.fragments = List.copyOf(fragments);
+        }
+
+        public List<String> getFragments() { return fragments; }
+
+        // What the fragment has to match against a whitespace-free body
+        public static String normalize(String fragment) {
+            return fragment.replaceAll("\\s+", "");
+        }
+
+        @Override public boolean equals(Object o) { return o instanceof BodyContains b && b.fragments.equals(fragments); }
+        @Override public int hashCode() { return fragments.hashCode(); }
+        @Override public String toString() { return "body contains " + fragments; }
+    }
+
+    // expect compressed size < 20kb; (response body bytes as they came over the wire)
+    public static final class CompressedSizeBelow extends IrAssertion {
+        private final long maxBytes; // exclusive
+
+        public CompressedSizeBelow(long maxBytes) { this.maxBytes = maxBytes; }
+
+        public long getMaxBytes() { return maxBytes; }
+
+        @Override public boolean equals(Object o) { return o instanceof CompressedSizeBelow c && c.maxBytes == maxBytes; }
+        @Override public int hashCode() { return Long.hashCode(maxBytes); }
+        @Override public String toString() { return "compressed size < " + maxBytes; }
+    }
+}
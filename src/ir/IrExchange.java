@@ -0,0 +1,29 @@
+package ir;
+
+import java.util.*;
+
+// One request and the assertions made on its response
+public class IrExchange {
+    private final IrRequest request;
+    private List<IrAssertion> assertions;
+
+    public IrExchange(IrRequest request, List<IrAssertion> assertions) {
+        this.request = request;
+        this.assertions = assertions;
+    }
+
+    public IrRequest getRequest() { return request; }
+    public List<IrAssertion> getAssertions() { return assertions; }
+
+    // Passes rewrite the assertion list wholesale
+    public void setAssertions(List<IrAssertion> assertions) {
+        this.assertions = assertions;
+    }
+
+    public boolean hasBodyAssertions() {
+        for (IrAssertion a : assertions) {
+            if (a instanceof IrAssertion.BodyContains) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Lowered form of a Kontrakt program that the generators consume.
+ *
+ * Unlike the AST, every path and body here is already resolved (variables
+ * substituted), and each test is a list of exchanges - a request together
+ * with the assertions made on its response - so backends never have to track
+ * "the current response" themselves.
+ */
+public class IrProgram {
+    private final String baseUrl;
+    private final Map<String, String> defaultHeaders;
+    private final Map<String, String> variables; // still needed for templated file bodies
+    private final List<IrTest> tests;
+
+    public IrProgram(String baseUrl, Map<String, String> defaultHeaders,
+                     Map<String, String> variables, List<IrTest> tests) {
+        this.baseUrl = baseUrl;
+        this.defaultHeaders = defaultHeaders;
+        this.variables = variables;
+        this.tests = tests;
+    }
+
+    public String getBaseUrl() { return baseUrl; }
+    public Map<String, String> getDefaultHeaders() { return defaultHeaders; }
+    public Map<String, String> getVariables() { return variables; }
+    public List<IrTest> getTests() { return tests; }
+}
@@ -0,0 +1,56 @@
+package ir;
+
+import ast.HttpMethod;
+import java.util.*;
+
+public class IrRequest {
+    private final HttpMethod method;
+    private final String pathTemplate; // as written, e.g. /api/users/$id
+    private final String path;         // resolved, e.g. /api/users/42
+    private final Map<String, String> headers;
+    private final String body;         // resolved inline body, or null
+    private final String bodyFile;     // body streamed from this file, or null
+    private final boolean bodyTemplated;
+    private final boolean bodyGzip;               // sent with Content-Encoding: gzip
+    private final String ifNoneMatch;             // resolved fixed ETag, or null
+    private final boolean ifNoneMatchPrevious;    // ETag of the previous response in the test
+
+    public IrRequest(HttpMethod method, String pathTemplate, String path, Map<String, String> headers,
+                     String body, String bodyFile, boolean bodyTemplated) {
+        this(method, pathTemplate, path, headers, body, bodyFile, bodyTemplated, false, null, false);
+    }
+
+    public IrRequest(HttpMethod method, String pathTemplate, String path, Map<String, String> headers,
+                     String body, String bodyFile, boolean bodyTemplated, boolean bodyGzip,
+                     String ifNoneMatch, boolean ifNoneMatchPrevious) {
+        this.method = method;
+        this.pathTemplate = pathTemplate;
+        this.path = path;
+        this.headers = headers;
+        this.body = body;
+        this.bodyFile = bodyFile;
+        this.bodyTemplated = bodyTemplated;
+        this.bodyGzip = bodyGzip;
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifNoneMatchPrevious = ifNoneMatchPrevious;
+    }
+
+    public HttpMethod getMethod() { return method; }
+    public String getPathTemplate() { return pathTemplate; }
+    public String getPath() { return path; }
+    public Map<String, String> getHeaders() { return headers; }
+    public String getBody() { return body; }
+    public String getBodyFile() { return bodyFile; }
+    public boolean isBodyTemplated() { return bodyTemplated; }
+    public boolean isBodyGzip() { return bodyGzip; }
+    public String getIfNoneMatch() { return ifNoneMatch; }
+    public boolean isIfNoneMatchPrevious() { return ifNoneMatchPrevious; }
+
+    public boolean isConditional() {
+        return ifNoneMatch != null || ifNoneMatchPrevious;
+    }
+
+    public boolean isAbsolute() {
+        return !path.startsWith("/");
+    }
+}
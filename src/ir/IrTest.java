@@ -0,0 +1,16 @@
+package ir;
+
+import java.util.*;
+
+public class IrTest {
+    private final String name;
+    private final List<IrExchange> exchanges;
+
+    public IrTest(String name, List<IrExchange> exchanges) {
+        this.name = name;
+        this.exchanges = exchanges;
+    }
+
+    public String getName() { return name; }
+    public List<IrExchange> getExchanges() { return exchanges; }
+}
@@ -0,0 +1,90 @@
+package ir;
+
+import ast.*;
+import java.util.*;
+
+/**
+ * AST -> IR. Resolves every $variable to its value and groups each request
+ * with the assertions that follow it.
+ */
+public class Lowering {
+
+    private final Map<String, String> variables = new LinkedHashMap<>();
+
+    public IrProgram lower(Program program) {
+        variables.clear();
+        for (Variable v : program.getVariables()) {
+            variables.put(v.getName(), v.getValue());
+        }
+
+        String baseUrl = null;
+        Map<String, String> defaultHeaders = new LinkedHashMap<>();
+        if (program.getConfig() != null) {
+            baseUrl = program.getConfig().getBaseUrl();
+            defaultHeaders.putAll(program.getConfig().getDefaultHeaders());
+            if (program.getConfig().getAcceptEncoding() != null) {
+                // Responses in these encodings are decompressed by the runtime before any body check
+                defaultHeaders.put("Accept-Encoding", program.getConfig().getAcceptEncoding());
+            }
+        }
+
+        List<IrTest> tests = new ArrayList<>();
+        for (Test test : program.getTests()) {
+            tests.add(lower(test));
+        }
+        return new IrProgram(baseUrl, defaultHeaders, Collections.unmodifiableMap(variables), tests);
+    }
+
+    private IrTest lower(Test test) {
+        List<IrExchange> exchanges = new ArrayList<>();
+        List<IrAssertion> current = null;
+        for (Statement stmt : test.getStatements()) {
+            if (stmt instanceof Request req) {
+                IrRequest lowered = lower(req);
+                if (lowered.isIfNoneMatchPrevious() && exchanges.isEmpty()) {
+                    System.err.println("⚠️  " + test.getName() + ": 'if-none-match previous' on the first request, sent unconditionally");
+                    lowered = new IrRequest(lowered.getMethod(), lowered.getPathTemplate(), lowered.getPath(),
+                            lowered.getHeaders(), lowered.getBody(), lowered.getBodyFile(), lowered.isBodyTemplated(),
+                            lowered.isBodyGzip(), null, false);
+                }
+                current = new ArrayList<>();
+                exchanges.add(new IrExchange(lowered, current));
+            } else if (stmt instanceof Assertion assertion) {
+                if (current == null) {
+                    System.err.println("⚠️  " + test.getName() + ": assertion before any request ignored");
+                    continue;
+                }
+                current.add(lower(assertion));
+            }
+        }
+        return new IrTest(test.getName(), exchanges);
+    }
+
+    private IrRequest lower(Request req) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        req.getHeaders().forEach((k, v) -> headers.put(substitute(k), substitute(v)));
+        return new IrRequest(req.getMethod(), req.getPath(), substitute(req.getPath()), headers,
+                substitute(req.getBody()), req.getBodyFile(), req.isBodyTemplated(), req.isBodyGzip(),
+                substitute(req.getIfNoneMatch()), req.isIfNoneMatchPrevious());
+    }
+
+    private IrAssertion lower(Assertion a) {
+        return switch (a.getType()) {
+            case STATUS -> new IrAssertion.Status(a.getStatusCode());
+            case STATUS_RANGE -> new IrAssertion.StatusRange(a.getMinStatus(), a.getMaxStatus());
+            case HEADER_EQUALS -> new IrAssertion.HeaderEquals(a.getHeaderName(), a.getExpectedValue());
+            case HEADER_CONTAINS -> new IrAssertion.HeaderContains(a.getHeaderName(), a.getExpectedValue());
+            case BODY_CONTAINS -> new IrAssertion.BodyContains(List.of(a.getExpectedValue()));
+            case COMPRESSED_SIZE_BELOW -> new IrAssertion.CompressedSizeBelow(a.getMaxBytes());
+        };
+    }
+
+    private String substitute(String text) {
+        if (text == null) return null;
+        String result = text;
+        for (var entry : variables.entrySet()) {
+            result = result.replace("$" + entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+}
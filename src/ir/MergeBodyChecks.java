@@ -0,0 +1,48 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Merges runs of adjacent `body contains` checks into one node, so the
+ * generated code normalizes and scans the body once per response, and drops
+ * fragments already implied by a longer one ("\"id\"" inside "\"id\": 42").
+ */
+public class MergeBodyChecks implements Pass {
+
+    @Override
+    public List<IrAssertion> run(List<IrAssertion> assertions) {
+        List<IrAssertion> result = new ArrayList<>();
+        List<String> run = new ArrayList<>();
+        for (IrAssertion a : assertions) {
+            if (a instanceof IrAssertion.BodyContains b) {
+                run.addAll(b.getFragments());
+                continue;
+            }
+            flush(run, result);
+            result.add(a);
+        }
+        flush(run, result);
+        return result;
+    }
+
+    private void flush(List<String> run, List<IrAssertion> result) {
+        if (run.isEmpty()) return;
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < run.size(); i++) {
+            if (!impliedByAnother(run, i)) kept.add(run.get(i));
+        }
+        result.add(new IrAssertion.BodyContains(kept));
+        run.clear();
+    }
+
+    private boolean impliedByAnother(List<String> fragments, int index) {
+        String self = IrAssertion.BodyContains.normalize(fragments.get(index));
+        for (int j = 0; j < fragments.size(); j++) {
+            if (j == index) continue;
+            String other = IrAssertion.BodyContains.normalize(fragments.get(j));
+            // Identical fragments: keep only the first one
+            if (other.equals(self) ? j < index : other.contains(self)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package ir;
+
+import java.util.*;
+
+// Runs the pass pipeline over every response in the program
+public class Optimizer {
+
+    private final List<Pass> passes;
+
+    public Optimizer(List<Pass> passes) {
+        this.passes = passes;
+    }
+
+    public static Optimizer standard() {
+        return new Optimizer(List.of(
+            new FoldConstants(),
+            new DeduplicateAssertions(),
+            new DropSubsumedAssertions(),
+            new MergeBodyChecks()
+        ));
+    }
+
+    public IrProgram optimize(IrProgram program) {
+        for (IrTest test : program.getTests()) {
+            for (IrExchange exchange : test.getExchanges()) {
+                List<IrAssertion> assertions = exchange.getAssertions();
+                for (Pass pass : passes) {
+                    assertions = pass.run(assertions);
+                }
+                exchange.setAssertions(assertions);
+            }
+        }
+        return program;
+    }
+}
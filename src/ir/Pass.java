@@ -0,0 +1,8 @@
+package ir;
+
+import java.util.List;
+
+// An IR -> IR rewrite of the assertions made on one response
+public interface Pass {
+    List<IrAssertion> run(List<IrAssertion> assertions);
+}
@@ -0,0 +1,119 @@
+package runtime;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body handler for responses that are only checked with `expect body contains`.
+ *
+ * The body is decoded as it streams in, with whitespace dropped (the same
+ * normalization the generated assertions use), and the download is cancelled
+ * as soon as every needle has been seen. The resulting "body" is the
+ * normalized text read so far - enough to evaluate the assertions, and the
+ * whole body whenever one of them fails.
+ */
+public final class BodyMatch {
+
+    private BodyMatch() {}
+
+    // Needles must already be whitespace-free
+    public static HttpResponse.BodyHandler<String> untilFound(String... needles) {
+        return info -> new Subscriber(needles);
+    }
+
+    static final class Subscriber implements HttpResponse.BodySubscriber<String> {
+        private final List<String> missing;
+        private final int longest;
+        private final StringBuilder text = new StringBuilder();
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private ByteBuffer leftover = ByteBuffer.allocate(0);
+        private int searchedUpTo = 0;
+        private Flow.Subscription subscription;
+
+        Subscriber(String[] needles) {
+            this.missing = new ArrayList<>(Arrays.asList(needles));
+            int max = 0;
+            for (String needle : needles) max = Math.max(max, needle.length());
+            this.longest = max;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (missing.isEmpty()) {
+                finish(true);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            if (result.isDone()) return;
+            for (ByteBuffer chunk : chunks) {
+                decode(chunk, false);
+            }
+            if (allFound()) {
+                finish(true);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) return;
+            decode(ByteBuffer.allocate(0), true);
+            finish(false);
+        }
+
+        private void finish(boolean cancel) {
+            if (cancel && subscription != null) subscription.cancel();
+            result.complete(text.toString());
+        }
+
+        private void decode(ByteBuffer chunk, boolean endOfInput) {
+            // Carry incomplete UTF-8 sequences over to the next chunk
+            ByteBuffer in = leftover.hasRemaining()
+                    ? ByteBuffer.allocate(leftover.remaining() + chunk.remaining()).put(leftover).put(chunk).flip()
+                    : chunk;
+            CharBuffer out = CharBuffer.allocate((int) (in.remaining() * 1.1) + 16);
+            decoder.decode(in, out, endOfInput);
+            if (endOfInput) decoder.flush(out);
+            leftover = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : ByteBuffer.allocate(0);
+
+            out.flip();
+            while (out.hasRemaining()) {
+                char c = out.get();
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') text.append(c);
+            }
+        }
+
+        private boolean allFound() {
+            // Only rescan the tail that could hold a needle not seen before
+            int from = Math.max(0, searchedUpTo - longest + 1);
+            missing.removeIf(needle -> text.indexOf(needle, from) != -1);
+            searchedUpTo = text.length();
+            return missing.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package runtime;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Flow;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Record/replay of HTTP exchanges for the generated tests.
+ *
+ * Mode and file come from system properties:
+ *   -Dkontrakt.cassette=record|replay   (anything else: plain pass-through)
+ *   -Dkontrakt.cassette.file=kontrakt.cassette
+ *
+ * In record mode every exchange of the run is written to a compact binary
+ * file (a new recording replaces the old file). In replay mode the file is
+ * memory-mapped once, indexed by (test, method, URL, header digest, body
+ * digest), and responses are served straight out of the mapping with no
+ * network I/O.
+ *
+ * A test may send the same request more than once and get different answers
+ * (GET, PUT, GET again), so every key keeps all its recordings in order and
+ * the n-th replay of a request gets the n-th recording. Replaying it more
+ * often than it was recorded fails the request; recordings a test never
+ * replayed fail {@link #checkAllReplayed()}, which the generated class calls
+ * once all its tests ran. Keying on the test keeps that order deterministic
+ * when tests run in parallel.
+ *
+ * File layout (big-endian):
+ *   "KCS2"
+ *   repeated records:
+ *     int   recordLength   (bytes after this field)
+ *     UTF   test, UTF method, UTF url
+ *     long  headerDigest, long bodyDigest
+ *     int   status
+ *     short headerCount, then per header: UTF name, UTF value
+ *     int   bodyLength, byte[bodyLength] body
+ */
+public final class Cassette {
+
+    public enum Mode { OFF, RECORD, REPLAY }
+
+    private static final int MAGIC = 0x4B435332; // "KCS2"
+    private static final int MAGIC_V1 = 0x4B435331; // "KCS1": no test names, no occurrence order
+
+    private static final Mode MODE = parseMode(System.getProperty("kontrakt.cassette", "off"));
+    private static final Path FILE = Paths.get(System.getProperty("kontrakt.cassette.file", "kontrakt.cassette"));
+
+    private static DataOutputStream recorder;
+    private static MappedByteBuffer tape;
+    private static Map<Key, Recordings> index;
+
+    private Cassette() {}
+
+    public static Mode mode() {
+        return MODE;
+    }
+
+    /**
+     * Sends the request - or, in replay mode, answers it from the cassette.
+     * `body` is the request body as sent (null for none); the JDK gives no way
+     * to read it back from the HttpRequest, so callers pass it along.
+     */
+    public static <T> HttpResponse<T> send(HttpClient client, HttpRequest request, String body,
+                                           HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        switch (MODE) {
+            case RECORD: {
+                HttpResponse<byte[]> raw = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                record(request, body, raw);
+                return replayed(request, raw.statusCode(), raw.headers(), ByteBuffer.wrap(raw.body()), handler);
+            }
+            case REPLAY: {
+                Key key = Key.of(Latency.currentTest(), request, body);
+                Recordings recordings = index().get(key);
+                if (recordings == null) {
+                    throw new IOException("No recorded exchange for " + request.method() + " " + request.uri()
+                            + " in test " + key.test + " in " + FILE);
+                }
+                int offset = recordings.next();
+                if (offset < 0) {
+                    throw new IOException(request.method() + " " + request.uri() + " was recorded "
+                            + recordings.offsets.size() + " time(s) in test " + key.test
+                            + ", but the test sends it again (re-record " + FILE + ")");
+                }
+                return replay(request, offset, handler);
+            }
+            default:
+                return client.send(request, handler);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Recording
+
+    private static synchronized void record(HttpRequest request, String body, HttpResponse<byte[]> response)
+            throws IOException {
+        if (recorder == null) {
+            // One recording per run: occurrences from an older run would be replayed as extra ones
+            recorder = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(FILE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+            recorder.writeInt(MAGIC);
+            Runtime.getRuntime().addShutdownHook(new Thread(Cassette::closeRecorder));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream rec = new DataOutputStream(bytes);
+        Key key = Key.of(Latency.currentTest(), request, body);
+        rec.writeUTF(key.test);
+        rec.writeUTF(key.method);
+        rec.writeUTF(key.url);
+        rec.writeLong(key.headerDigest);
+        rec.writeLong(key.bodyDigest);
+        rec.writeInt(response.statusCode());
+
+        List<String[]> headers = new ArrayList<>();
+        response.headers().map().forEach((name, values) -> {
+            for (String value : values) headers.add(new String[] { name, value });
+        });
+        rec.writeShort(headers.size());
+        for (String[] header : headers) {
+            rec.writeUTF(header[0]);
+            rec.writeUTF(header[1]);
+        }
+        rec.writeInt(response.body().length);
+        rec.write(response.body());
+
+        recorder.writeInt(bytes.size());
+        bytes.writeTo(recorder);
+        recorder.flush();
+    }
+
+    private static synchronized void closeRecorder() {
+        try {
+            if (recorder != null) recorder.close();
+        } catch (IOException e) {
+            // nothing useful to do at shutdown
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Replay
+
+    private static synchronized Map<Key, Recordings> index() throws IOException {
+        if (index != null) return index;
+
+        try (FileChannel channel = FileChannel.open(FILE, StandardOpenOption.READ)) {
+            tape = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        index = index(tape);
+        return index;
+    }
+
+    // Every key's recordings, in the order they were made
+    static Map<Key, Recordings> index(ByteBuffer tape) throws IOException {
+        if (tape.remaining() >= 4 && tape.getInt(0) == MAGIC_V1) {
+            throw new IOException(FILE + " was recorded by an older version, record it again");
+        }
+        if (tape.remaining() < 4 || tape.getInt(0) != MAGIC) {
+            throw new IOException(FILE + " is not a Kontrakt cassette");
+        }
+
+        Map<Key, Recordings> result = new HashMap<>();
+        ByteBuffer in = tape.duplicate();
+        in.position(4);
+        while (in.remaining() >= 4) {
+            int length = in.getInt();
+            int start = in.position();
+            Key key = new Key(readUtf(in), readUtf(in), readUtf(in), in.getLong(), in.getLong());
+            result.computeIfAbsent(key, k -> new Recordings()).offsets.add(start);
+            in.position(start + length);
+        }
+        return result;
+    }
+
+    /**
+     * Fails if a test that replayed from the cassette left some of its
+     * recordings unused - it sent fewer requests than when it was recorded.
+     * Tests that didn't run at all (another shard, a filter) are not checked.
+     */
+    public static void checkAllReplayed() {
+        Map<Key, Recordings> replayed;
+        synchronized (Cassette.class) {
+            replayed = index;
+        }
+        if (MODE != Mode.REPLAY || replayed == null) return;
+
+        Set<String> tests = new HashSet<>();
+        for (var entry : replayed.entrySet()) {
+            if (entry.getValue().used() > 0) tests.add(entry.getKey().test);
+        }
+        List<String> unused = new ArrayList<>();
+        for (var entry : replayed.entrySet()) {
+            Key key = entry.getKey();
+            Recordings recordings = entry.getValue();
+            if (tests.contains(key.test) && recordings.used() < recordings.offsets.size()) {
+                unused.add(key.test + ": " + key.method + " " + key.url + " replayed " + recordings.used()
+                        + " of " + recordings.offsets.size() + " time(s)");
+            }
+        }
+        if (!unused.isEmpty()) {
+            Collections.sort(unused);
+            throw new AssertionError("recorded exchanges never replayed (re-record " + FILE + "):\n  "
+                    + String.join("\n  ", unused));
+        }
+    }
+
+    private static <T> HttpResponse<T> replay(HttpRequest request, int offset,
+                                              HttpResponse.BodyHandler<T> handler) throws IOException {
+        ByteBuffer in = tape.duplicate();
+        in.position(offset);
+        readUtf(in); // test
+        readUtf(in); // method
+        readUtf(in); // url
+        in.getLong();
+        in.getLong();
+        int status = in.getInt();
+
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int headerCount = Short.toUnsignedInt(in.getShort());
+        for (int i = 0; i < headerCount; i++) {
+            headers.computeIfAbsent(readUtf(in), k -> new ArrayList<>()).add(readUtf(in));
+        }
+
+        int bodyLength = in.getInt();
+        ByteBuffer body = in.slice();
+        body.limit(bodyLength);
+        return replayed(request, status, HttpHeaders.of(headers, (name, value) -> true), body, handler);
+    }
+
+    // Runs the caller's body handler over bytes we already have, so replayed
+    // responses look exactly like live ones to the generated test
+    private static <T> HttpResponse<T> replayed(HttpRequest request, int status, HttpHeaders headers,
+                                                ByteBuffer body, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo() {
+            public int statusCode() { return status; }
+            public HttpHeaders headers() { return headers; }
+            public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+        };
+
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(info);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {}
+            public void cancel() {}
+        });
+        if (body.hasRemaining()) subscriber.onNext(List.of(body));
+        subscriber.onComplete();
+
+        T value;
+        try {
+            value = subscriber.getBody().toCompletableFuture().get();
+        } catch (Exception e) {
+            throw new IOException("Could not decode replayed body", e);
+        }
+        return new ReplayedResponse<>(request, info, value);
+    }
+
+    private static String readUtf(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        // writeUTF's modified UTF-8 equals UTF-8 for everything but NUL and
+        // supplementary characters, neither of which show up in URLs or headers
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Mode parseMode(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "record": return Mode.RECORD;
+            case "replay": return Mode.REPLAY;
+            default: return Mode.OFF;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Data structures
+
+    // Offsets of one key's recordings, and how many of them were replayed
+    static final class Recordings {
+        final List<Integer> offsets = new ArrayList<>();
+        private int next;
+
+        // Offset of the next recording to replay, or -1 once all of them were
+        synchronized int next() {
+            return next < offsets.size() ? offsets.get(next++) : -1;
+        }
+
+        synchronized int used() {
+            return next;
+        }
+    }
+
+    static final class Key {
+        final String test;
+        final String method;
+        final String url;
+        final long headerDigest;
+        final long bodyDigest;
+
+        Key(String test, String method, String url, long headerDigest, long bodyDigest) {
+            this.test = test;
+            this.method = method;
+            this.url = url;
+            this.headerDigest = headerDigest;
+            this.bodyDigest = bodyDigest;
+        }
+
+        static Key of(String test, HttpRequest request, String body) {
+            // Header names are case-insensitive; sort so insertion order doesn't matter
+            TreeMap<String, List<String>> sorted = new TreeMap<>();
+            request.headers().map().forEach((name, values) -> sorted.put(name.toLowerCase(Locale.ROOT), values));
+            StringBuilder headers = new StringBuilder();
+            sorted.forEach((name, values) -> headers.append(name).append(':').append(values).append('\n'));
+
+            return new Key(test == null ? "" : test, request.method(), request.uri().toString(),
+                    fnv1a(headers.toString()), body == null ? 0L : fnv1a(body));
+        }
+
+        // 64-bit FNV-1a: cheap and plenty for telling exchanges apart
+        private static long fnv1a(String text) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= (b & 0xff);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return headerDigest == other.headerDigest && bodyDigest == other.bodyDigest
+                    && test.equals(other.test) && method.equals(other.method) && url.equals(other.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(test, method, url, headerDigest, bodyDigest);
+        }
+    }
+
+    private static final class ReplayedResponse<T> implements HttpResponse<T> {
+        private final HttpRequest request;
+        private final HttpResponse.ResponseInfo info;
+        private final T body;
+
+        ReplayedResponse(HttpRequest request, HttpResponse.ResponseInfo info, T body) {
+            this.request = request;
+            this.info = info;
+            this.body = body;
+        }
+
+        public int statusCode() { return info.statusCode(); }
+        public HttpRequest request() { return request; }
+        public Optional<HttpResponse<T>> previousResponse() { return Optional.empty(); }
+        public HttpHeaders headers() { return info.headers(); }
+        public T body() { return body; }
+        public Optional<SSLSession> sslSession() { return Optional.empty(); }
+        public URI uri() { return request.uri(); }
+        public HttpClient.Version version() { return info.version(); }
+    }
+}
@@ -0,0 +1,295 @@
+package runtime;
+
+import java.io.*;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.*;
+
+/**
+ * gzip/deflate for the generated tests. java.net.http.HttpClient neither
+ * advertises nor decodes content encodings, so:
+ *
+ *  - {@link #decoding} wraps a body handler: a gzip or deflate response is
+ *    inflated chunk by chunk as it streams in, before the wrapped handler
+ *    (and so any body assertion) sees it. The bytes that came over the wire
+ *    are counted on the way, for `expect compressed size < ...`. A body the
+ *    handler discards is only counted, never inflated.
+ *  - {@link #gzip(byte[])} and {@link #gzip(InputStream)} compress request
+ *    bodies, the latter lazily so file bodies never sit in memory.
+ */
+public final class Compression {
+
+    private static final int CHUNK = 16 * 1024;
+
+    // What BodyHandlers.discarding() (and replacing()) subscribe with
+    private static final Class<?> DISCARDING = HttpResponse.BodySubscribers.discarding().getClass();
+
+    private Compression() {}
+
+    // ---------------------------------------------------------------------
+    // Responses
+
+    /** `wireBytes` receives the number of body bytes as received, before decoding. */
+    public static <T> HttpResponse.BodyHandler<T> decoding(HttpResponse.BodyHandler<T> handler, AtomicLong wireBytes) {
+        return info -> {
+            HttpResponse.BodySubscriber<T> downstream = handler.apply(info);
+            if (downstream.getClass() == DISCARDING) {
+                // Status-only or size-only: inflating would be thrown away, so is a corrupt body
+                return new DecodingSubscriber<>(downstream, null, wireBytes);
+            }
+            String encoding = info.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+            Decoder decoder = switch (encoding) {
+                case "gzip", "x-gzip" -> new Decoder(true);
+                case "deflate" -> new Decoder(false);
+                default -> null; // identity (or an encoding we didn't ask for - passed through as is)
+            };
+            return new DecodingSubscriber<>(downstream, decoder, wireBytes);
+        };
+    }
+
+    private static final class DecodingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final Decoder decoder;
+        private final AtomicLong wireBytes;
+        private Flow.Subscription subscription;
+        private boolean failed;
+
+        DecodingSubscriber(HttpResponse.BodySubscriber<T> downstream, Decoder decoder, AtomicLong wireBytes) {
+            this.downstream = downstream;
+            this.decoder = decoder;
+            this.wireBytes = wireBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (failed) return;
+            for (ByteBuffer item : items) {
+                wireBytes.addAndGet(item.remaining());
+            }
+            if (decoder == null) {
+                downstream.onNext(items);
+                return;
+            }
+            List<ByteBuffer> decoded = new ArrayList<>();
+            try {
+                for (ByteBuffer item : items) {
+                    decoder.decode(item, decoded);
+                }
+            } catch (IOException e) {
+                failed = true;
+                subscription.cancel();
+                downstream.onError(e);
+                return;
+            }
+            downstream.onNext(decoded);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!failed) downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) return;
+            if (decoder != null && decoder.truncated()) {
+                downstream.onError(new EOFException("Compressed response body ended early"));
+                return;
+            }
+            downstream.onComplete();
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+    }
+
+    /** Push-style inflater: takes the body as it arrives, emits what it can inflate so far. */
+    private static final class Decoder {
+        private final boolean gzip;
+        private final byte[] chunk = new byte[CHUNK];
+        private Inflater inflater;          // created once the stream header is known
+        private byte[] pending = new byte[0]; // header bytes seen so far
+        private boolean started;
+        private boolean finished;
+        private final CRC32 crc = new CRC32(); // gzip: of the inflated bytes, checked against the trailer
+        private long size;
+        private final byte[] trailer = new byte[8]; // gzip: CRC32 and ISIZE, little-endian
+        private int trailerLength;
+
+        Decoder(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        void decode(ByteBuffer in, List<ByteBuffer> out) throws IOException {
+            byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            if (bytes.length == 0) return;
+            if (finished) {
+                trailer(bytes, 0);
+                return;
+            }
+
+            int offset = 0;
+            if (inflater == null) {
+                pending = concat(pending, bytes);
+                int start = gzip ? gzipHeaderLength(pending) : deflateStart(pending);
+                if (start < 0) return; // header incomplete, wait for more
+                bytes = pending;
+                offset = start;
+                pending = null;
+            }
+            started = true;
+
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            try {
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(chunk);
+                    if (n > 0) {
+                        if (gzip) crc.update(chunk, 0, n);
+                        out.add(ByteBuffer.wrap(Arrays.copyOf(chunk, n)));
+                    } else if (inflater.needsInput() || inflater.needsDictionary()) {
+                        break;
+                    } else if (!inflater.finished()) {
+                        // No output, no input wanted: looping again would spin forever
+                        throw new ZipException("Corrupt " + (gzip ? "gzip" : "deflate")
+                                + " response body: inflater made no progress");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Corrupt " + (gzip ? "gzip" : "deflate") + " response body: " + e.getMessage());
+            }
+            if (inflater.finished()) {
+                finished = true;
+                size = inflater.getBytesWritten();
+                int rest = inflater.getRemaining();
+                inflater.end();
+                trailer(bytes, bytes.length - rest);
+            }
+        }
+
+        boolean truncated() {
+            return (started || (pending != null && pending.length > 0))
+                    && !(finished && (!gzip || trailerLength == trailer.length));
+        }
+
+        // Collects the gzip trailer once the deflate stream is done; anything after it is ignored
+        private void trailer(byte[] bytes, int from) throws ZipException {
+            if (!gzip || trailerLength == trailer.length) return;
+            int n = Math.min(trailer.length - trailerLength, bytes.length - from);
+            System.arraycopy(bytes, from, trailer, trailerLength, n);
+            trailerLength += n;
+            if (trailerLength < trailer.length) return;
+
+            if (littleEndian(trailer, 0) != crc.getValue()) {
+                throw new ZipException("Corrupt gzip response body: CRC32 mismatch");
+            }
+            if (littleEndian(trailer, 4) != (size & 0xffffffffL)) {
+                throw new ZipException("Corrupt gzip response body: size mismatch");
+            }
+        }
+
+        private static long littleEndian(byte[] b, int at) {
+            return (b[at] & 0xffL) | (b[at + 1] & 0xffL) << 8 | (b[at + 2] & 0xffL) << 16 | (b[at + 3] & 0xffL) << 24;
+        }
+
+        // Length of the gzip member header (RFC 1952), or -1 if more bytes are needed
+        private int gzipHeaderLength(byte[] b) throws IOException {
+            if (b.length < 10) return -1;
+            if ((b[0] & 0xff) != 0x1f || (b[1] & 0xff) != 0x8b || b[2] != 8) {
+                throw new ZipException("Response says gzip but is not in gzip format");
+            }
+            int flags = b[3] & 0xff;
+            int pos = 10;
+            if ((flags & 4) != 0) { // FEXTRA
+                if (b.length < pos + 2) return -1;
+                pos += 2 + ((b[pos] & 0xff) | ((b[pos + 1] & 0xff) << 8));
+            }
+            for (int flag : new int[] { 8, 16 }) { // FNAME, FCOMMENT: zero-terminated
+                if ((flags & flag) == 0) continue;
+                while (pos < b.length && b[pos] != 0) pos++;
+                if (pos >= b.length) return -1;
+                pos++;
+            }
+            if ((flags & 2) != 0) pos += 2; // FHCRC
+            if (b.length < pos) return -1;
+            inflater = new Inflater(true);
+            return pos;
+        }
+
+        // "deflate" should be zlib-wrapped (RFC 1950), but some servers send raw deflate
+        private int deflateStart(byte[] b) {
+            if (b.length < 2) return -1;
+            int cmf = b[0] & 0xff, flg = b[1] & 0xff;
+            boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            inflater = new Inflater(!zlib);
+            return 0;
+        }
+
+        private static byte[] concat(byte[] a, byte[] b) {
+            byte[] result = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, result, a.length, b.length);
+            return result;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Requests
+
+    public static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory, can't happen
+        }
+        return bytes.toByteArray();
+    }
+
+    /** gzip-compresses `raw` as it is read. */
+    public static InputStream gzip(InputStream raw) {
+        CRC32 crc = new CRC32();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        InputStream header = new ByteArrayInputStream(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff });
+        InputStream body = new DeflaterInputStream(new CheckedInputStream(raw, crc), deflater, CHUNK);
+        // Only known once the body has been read through
+        InputStream trailer = new InputStream() {
+            private ByteArrayInputStream bytes;
+
+            @Override
+            public int read() {
+                return trailer().read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return trailer().read(b, off, len);
+            }
+
+            private ByteArrayInputStream trailer() {
+                if (bytes == null) {
+                    long crcValue = crc.getValue();
+                    long size = deflater.getBytesRead();
+                    deflater.end();
+                    bytes = new ByteArrayInputStream(new byte[] {
+                        (byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16), (byte) (crcValue >> 24),
+                        (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+                    });
+                }
+                return bytes;
+            }
+        };
+        return new SequenceInputStream(Collections.enumeration(List.of(header, body, trailer)));
+    }
+}
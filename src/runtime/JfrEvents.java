@@ -0,0 +1,130 @@
+package runtime;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events for the requests and assertions of a run, so a
+ * recording lines up HTTP latency with GC pauses, allocation and thread
+ * activity:
+ *
+ *   java -XX:StartFlightRecording=filename=kontrakt.jfr -jar junit... (make run-tests-jfr)
+ *   jfr print --events kontrakt.Request kontrakt.jfr
+ *
+ * All of them are emitted by runtime.Kontrakt, so every runner going through it gets
+ * them. Without a recording (or with these events disabled) shouldCommit() is
+ * false and the event objects are never filled in; the JIT scalar-replaces
+ * them, so they can stay in soak runs.
+ */
+public final class JfrEvents {
+
+    private JfrEvents() {}
+
+    @Name("kontrakt.Request")
+    @Label("Kontrakt Request")
+    @Description("One request from the spec: sent, answered, body read as far as the assertions need")
+    @Category({"Kontrakt"})
+    @StackTrace(false)
+    public static final class Request extends Event {
+        @Label("Test")
+        public String test;
+
+        @Label("Method")
+        public String method;
+
+        @Label("Path Template")
+        @Description("The path as written in the spec, before variable substitution")
+        public String pathTemplate;
+
+        @Label("Status")
+        @Description("Response status code; 0 if no response arrived")
+        public int status;
+
+        @Label("Bytes")
+        @Description("Body bytes received over the wire (compressed, when the server compressed them)")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * One per assertion the generated test evaluates. That is one per
+     * `expect` the spec wrote, except for two cases:
+     *  - the optimizer removes repeated assertions and ones a stronger
+     *    assertion on the same response implies (ir.DeduplicateAssertions,
+     *    ir.DropSubsumedAssertions, and `body contains` fragments inside a
+     *    longer one in ir.MergeBodyChecks), so those never run and have no
+     *    event;
+     *  - the first failing assertion ends its test, so the later ones in
+     *    that test have no event either.
+     * `body contains` checks that MergeBodyChecks folded into one call still
+     * get one event each.
+     */
+    @Name("kontrakt.Assertion")
+    @Label("Kontrakt Assertion")
+    @Category({"Kontrakt"})
+    @StackTrace(false)
+    public static final class Assertion extends Event {
+        @Label("Test")
+        public String test;
+
+        @Label("Type")
+        @Description("STATUS, STATUS_RANGE, HEADER_EQUALS, HEADER_CONTAINS, BODY_CONTAINS or COMPRESSED_SIZE_BELOW")
+        public String type;
+
+        @Label("Passed")
+        public boolean passed;
+
+        @Label("Failure")
+        public String failure;
+    }
+
+    /** A response checked against its inferred schema (`Main --validate`); not written in the spec. */
+    @Name("kontrakt.SchemaValidation")
+    @Label("Kontrakt Schema Validation")
+    @Category({"Kontrakt"})
+    @StackTrace(false)
+    public static final class SchemaValidation extends Event {
+        @Label("Test")
+        public String test;
+
+        @Label("Method")
+        public String method;
+
+        @Label("Path Template")
+        public String pathTemplate;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Passed")
+        public boolean passed;
+
+        @Label("Failure")
+        public String failure;
+    }
+
+    /** Records one assertion evaluation; `failure` is null when it passed. */
+    static void assertion(String type, String failure) {
+        Assertion event = new Assertion();
+        if (event.shouldCommit()) {
+            event.test = Latency.currentTest();
+            event.type = type;
+            event.passed = failure == null;
+            event.failure = failure;
+            event.commit();
+        }
+    }
+
+    /** Records one schema check of a response; `failure` is null when it passed. */
+    static void schemaValidation(String method, String pathTemplate, int status, String failure) {
+        SchemaValidation event = new SchemaValidation();
+        if (event.shouldCommit()) {
+            event.test = Latency.currentTest();
+            event.method = method;
+            event.pathTemplate = pathTemplate;
+            event.status = status;
+            event.passed = failure == null;
+            event.failure = failure;
+            event.commit();
+        }
+    }
+}
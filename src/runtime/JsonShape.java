@@ -0,0 +1,257 @@
+package runtime;
+
+import java.util.Arrays;
+
+/**
+ * A response schema compiled into a validator (`Main --validate`).
+ *
+ * The generated class declares one shape per operation and status, built
+ * from the response schemas OpenApiGenerator infers from the spec: the body
+ * must be well-formed JSON and, when it is an object, every listed property
+ * it has must be of the listed type (OpenAPI `properties` semantics - a
+ * property the body doesn't have isn't an error, `body contains` checks for
+ * those). {@link #JSON} is the shape of responses nothing was inferred for,
+ * and the start of every other shape: `JsonShape.JSON.property(...)`.
+ *
+ * Validation is a single pass over the body text that builds nothing - no
+ * tree, no substrings, no boxing. Only a failure allocates, for its message.
+ */
+public final class JsonShape {
+
+    public enum Type {
+        ANY, STRING, NUMBER, BOOLEAN, NULL, OBJECT, ARRAY;
+
+        String label() {
+            return name().toLowerCase(java.util.Locale.ROOT);
+        }
+    }
+
+    /** Any well-formed JSON document. */
+    public static final JsonShape JSON = new JsonShape(new String[0], new Type[0]);
+
+    private static final int MAX_DEPTH = 512;
+
+    private final String[] names;
+    private final Type[] types;
+
+    private JsonShape(String[] names, Type[] types) {
+        this.names = names;
+        this.types = types;
+    }
+
+    /**
+     * This shape plus a typed property. Like the published schema it adds no
+     * root `type: object`: a body checked for a key may still be an array,
+     * and properties are only checked on an object root.
+     */
+    public JsonShape property(String name, Type type) {
+        String[] n = Arrays.copyOf(names, names.length + 1);
+        Type[] t = Arrays.copyOf(types, types.length + 1);
+        n[names.length] = name;
+        t[types.length] = type;
+        return new JsonShape(n, t);
+    }
+
+    /** Null if `json` fits the shape, else what's wrong with it. */
+    public String check(String json) {
+        Cursor c = new Cursor(json);
+        try {
+            c.skipSpace();
+            value(c, 0);
+            c.skipSpace();
+            if (c.i < json.length()) throw c.fail("unexpected content after the JSON value");
+            return c.mismatch;
+        } catch (Malformed e) {
+            return "malformed JSON at offset " + e.offset + ": " + e.getMessage();
+        }
+    }
+
+    // Parses one value at c.i, checking top-level members against the properties
+    private Type value(Cursor c, int depth) {
+        if (depth > MAX_DEPTH) throw c.fail("nested too deeply");
+        String s = c.s;
+        if (c.i >= s.length()) throw c.fail("unexpected end of input");
+        char ch = s.charAt(c.i);
+        switch (ch) {
+            case '{' -> {
+                c.i++;
+                c.skipSpace();
+                if (c.peek() == '}') { c.i++; return Type.OBJECT; }
+                while (true) {
+                    c.skipSpace();
+                    if (c.peek() != '"') throw c.fail("expected a property name");
+                    int keyStart = c.i + 1;
+                    boolean escaped = string(c);
+                    int keyEnd = c.i - 1;
+                    c.skipSpace();
+                    if (c.peek() != ':') throw c.fail("expected ':'");
+                    c.i++;
+                    c.skipSpace();
+                    Type type = value(c, depth + 1);
+                    if (depth == 0 && !escaped && c.mismatch == null) {
+                        checkProperty(c, keyStart, keyEnd, type);
+                    }
+                    c.skipSpace();
+                    char next = c.peek();
+                    c.i++;
+                    if (next == '}') return Type.OBJECT;
+                    if (next != ',') { c.i--; throw c.fail("expected ',' or '}'"); }
+                }
+            }
+            case '[' -> {
+                c.i++;
+                c.skipSpace();
+                if (c.peek() == ']') { c.i++; return Type.ARRAY; }
+                while (true) {
+                    c.skipSpace();
+                    value(c, depth + 1);
+                    c.skipSpace();
+                    char next = c.peek();
+                    c.i++;
+                    if (next == ']') return Type.ARRAY;
+                    if (next != ',') { c.i--; throw c.fail("expected ',' or ']'"); }
+                }
+            }
+            case '"' -> {
+                string(c);
+                return Type.STRING;
+            }
+            case 't' -> { c.literal("true"); return Type.BOOLEAN; }
+            case 'f' -> { c.literal("false"); return Type.BOOLEAN; }
+            case 'n' -> { c.literal("null"); return Type.NULL; }
+            default -> {
+                number(c);
+                return Type.NUMBER;
+            }
+        }
+    }
+
+    private void checkProperty(Cursor c, int keyStart, int keyEnd, Type actual) {
+        int length = keyEnd - keyStart;
+        for (int p = 0; p < names.length; p++) {
+            String name = names[p];
+            if (name.length() == length && c.s.regionMatches(keyStart, name, 0, length)) {
+                Type expected = types[p];
+                if (expected != Type.ANY && expected != actual) {
+                    c.mismatch = "$." + name + ": expected " + expected.label() + " but was " + actual.label();
+                }
+                return;
+            }
+        }
+    }
+
+    // Skips a string literal (c.i at the opening quote); true if it had escapes
+    private static boolean string(Cursor c) {
+        String s = c.s;
+        boolean escaped = false;
+        int i = c.i + 1;
+        while (true) {
+            if (i >= s.length()) { c.i = i; throw c.fail("unterminated string"); }
+            char ch = s.charAt(i);
+            if (ch == '"') break;
+            if (ch < 0x20) { c.i = i; throw c.fail("control character in string"); }
+            if (ch == '\\') {
+                escaped = true;
+                if (++i >= s.length()) { c.i = i; throw c.fail("unterminated string"); }
+                char e = s.charAt(i);
+                if (e == 'u') {
+                    for (int k = 1; k <= 4; k++) {
+                        if (i + k >= s.length() || Character.digit(s.charAt(i + k), 16) < 0) {
+                            c.i = i; throw c.fail("bad \\u escape");
+                        }
+                    }
+                    i += 4;
+                } else if ("\"\\/bfnrt".indexOf(e) < 0) {
+                    c.i = i; throw c.fail("bad escape");
+                }
+            }
+            i++;
+        }
+        c.i = i + 1;
+        return escaped;
+    }
+
+    // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+    private static void number(Cursor c) {
+        String s = c.s;
+        int i = c.i;
+        if (i < s.length() && s.charAt(i) == '-') i++;
+        if (i < s.length() && s.charAt(i) == '0') {
+            i++;
+        } else if (i < s.length() && s.charAt(i) >= '1' && s.charAt(i) <= '9') {
+            while (i < s.length() && isDigit(s.charAt(i))) i++;
+        } else {
+            throw c.fail("expected a value");
+        }
+        if (i < s.length() && s.charAt(i) == '.') {
+            int start = ++i;
+            while (i < s.length() && isDigit(s.charAt(i))) i++;
+            if (i == start) { c.i = i; throw c.fail("expected a digit"); }
+        }
+        if (i < s.length() && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < s.length() && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+            int start = i;
+            while (i < s.length() && isDigit(s.charAt(i))) i++;
+            if (i == start) { c.i = i; throw c.fail("expected a digit"); }
+        }
+        c.i = i;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{");
+        for (int p = 0; p < names.length; p++) {
+            if (p > 0) out.append(", ");
+            out.append(names[p]).append(": ").append(types[p].label());
+        }
+        return out.append("}").toString();
+    }
+
+    private static final class Cursor {
+        final String s;
+        int i;
+        String mismatch; // first property of the wrong type
+
+        Cursor(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            return i < s.length() ? s.charAt(i) : 0;
+        }
+
+        void skipSpace() {
+            while (i < s.length()) {
+                char ch = s.charAt(i);
+                if (ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t') return;
+                i++;
+            }
+        }
+
+        void literal(String word) {
+            if (!s.startsWith(word, i)) throw fail("expected a value");
+            i += word.length();
+        }
+
+        Malformed fail(String message) {
+            return new Malformed(message, i);
+        }
+    }
+
+    // Control flow for malformed input; no stack trace needed
+    private static final class Malformed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int offset;
+
+        Malformed(String message, int offset) {
+            super(message, null, false, false);
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package runtime;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLSession;
+
+/**
+ * The shared half of every generated test class.
+ *
+ * GeneratedTests used to unroll a builder chain, a DEFAULT_HEADERS loop,
+ * logging and body normalization into every test method. Now the generated
+ * class only declares one Kontrakt (base URL, HTTP client and the default
+ * headers as a precomputed array) and one prebuilt {@link Template} per
+ * request in the spec, and its test methods are a handful of calls into the
+ * code below - which stays hot and JIT-compiled across all the tests.
+ *
+ * Assertion helpers throw plain AssertionErrors, which JUnit reports as
+ * failures, so this library doesn't need JUnit on its classpath.
+ *
+ * Every send and every assertion is also a JFR event (see JfrEvents).
+ *
+ * With {@link #validating()}, every response body is also checked against
+ * the {@link JsonShape} registered for its operation and status (or just
+ * for being well-formed JSON) as soon as it arrives.
+ */
+public final class Kontrakt {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final int SHOWN_BODY_CHARS = 1000; // of a body quoted in a failure
+
+    private final HttpClient client;
+    private final String base;
+    private final String[] headers;           // name, value, name, value...
+    private final Map<String, String> vars;   // for templated file bodies
+    private final boolean validating;
+    private final Map<String, Map<Integer, JsonShape>> shapes;  // "METHOD path" -> status -> shape
+    private final boolean verbose;            // log every request and response to stdout
+
+    private Kontrakt(HttpClient client, String base, String[] headers, Map<String, String> vars,
+                     boolean validating, Map<String, Map<Integer, JsonShape>> shapes, boolean verbose) {
+        this.client = client;
+        this.base = base;
+        this.headers = headers;
+        this.vars = vars;
+        this.validating = validating;
+        this.shapes = shapes;
+        this.verbose = verbose;
+    }
+
+    /** `headers` are the spec's default headers as name/value pairs. */
+    public static Kontrakt configure(String base, String... headers) {
+        if (headers.length % 2 != 0) {
+            throw new IllegalArgumentException("headers must be name/value pairs");
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        String[] all = Arrays.copyOf(headers, headers.length + 2);
+        all[headers.length] = "Accept";
+        all[headers.length + 1] = "application/json";
+        return new Kontrakt(client, base == null ? "" : base, all, Map.of(), false, Map.of(),
+                Boolean.getBoolean("kontrakt.verbose"));
+    }
+
+    /** Variables substituted into `body = file "..." templated;` bodies. */
+    public Kontrakt vars(String... pairs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return new Kontrakt(client, base, headers, Collections.unmodifiableMap(map), validating, shapes, verbose);
+    }
+
+    /** Check every JSON response body for being well-formed, and against its shape if it has one. */
+    public Kontrakt validating() {
+        return new Kontrakt(client, base, headers, vars, true, shapes, verbose);
+    }
+
+    /**
+     * Print every request (line, If-None-Match, body) and response (status,
+     * body) as it goes by. Off by default - it's a lot of output and time in
+     * big suites; `Main --full-bodies` or -Dkontrakt.verbose=true turns it on.
+     */
+    public Kontrakt verbose() {
+        return new Kontrakt(client, base, headers, vars, validating, shapes, true);
+    }
+
+    /** The shape of `status` responses to `method path` (the path as the templates get it). */
+    public Kontrakt shape(String method, String path, int status, JsonShape shape) {
+        Map<String, Map<Integer, JsonShape>> map = new HashMap<>(shapes);
+        Map<Integer, JsonShape> byStatus = new HashMap<>(map.getOrDefault(method + " " + path, Map.of()));
+        byStatus.put(status, shape);
+        map.put(method + " " + path, Collections.unmodifiableMap(byStatus));
+        return new Kontrakt(client, base, headers, vars, true, Collections.unmodifiableMap(map), verbose);
+    }
+
+    // ---------------------------------------------------------------------
+    // Request templates; `key` is the request's spec identity for Latency
+
+    public Template get(String key, String path) {
+        return new Template(this, key, "GET", path, null, null, false);
+    }
+
+    public Template delete(String key, String path) {
+        return new Template(this, key, "DELETE", path, null, null, false);
+    }
+
+    public Template post(String key, String path, String body) {
+        return new Template(this, key, "POST", path, body, null, false);
+    }
+
+    public Template put(String key, String path, String body) {
+        return new Template(this, key, "PUT", path, body, null, false);
+    }
+
+    public Template postFile(String key, String path, String file, boolean templated) {
+        return new Template(this, key, "POST", path, null, file, templated);
+    }
+
+    public Template putFile(String key, String path, String file, boolean templated) {
+        return new Template(this, key, "PUT", path, null, file, templated);
+    }
+
+    /**
+     * One request from the spec. The HttpRequest is immutable, so it is built
+     * once (on first use, so a missing body file only fails its own test) and
+     * resent as is.
+     */
+    public static final class Template {
+        private final Kontrakt kontrakt;
+        private final String key;
+        private final String method;
+        private final String pathTemplate;  // from the key, for JFR events
+        private final String url;
+        private final String body;       // inline body, or null
+        private final String file;       // body file, or null
+        private final boolean templated;
+        private final boolean gzip;      // send the body gzip-compressed
+        private final String cassetteBody;
+        private final String[] extraHeaders;  // on top of the defaults, e.g. a fixed If-None-Match
+        private final int[] statuses;         // validated statuses and their shapes; null: not validating
+        private final JsonShape[] shapes;
+        private volatile HttpRequest request;
+
+        Template(Kontrakt kontrakt, String key, String method, String path, String body, String file,
+                 boolean templated) {
+            this(kontrakt, key, method, path.startsWith("/") ? kontrakt.base + path : path, body, file, templated,
+                    false, new String[0], kontrakt.validating ? kontrakt.shapes.getOrDefault(method + " " + path, Map.of()) : null);
+        }
+
+        private Template(Kontrakt kontrakt, String key, String method, String url, String body, String file,
+                         boolean templated, boolean gzip, String[] extraHeaders, Map<Integer, JsonShape> shapes) {
+            this.kontrakt = kontrakt;
+            this.key = key;
+            this.method = method;
+            this.pathTemplate = pathTemplate(key, method);
+            this.url = url;
+            this.body = body;
+            this.file = file;
+            this.templated = templated;
+            this.gzip = gzip;
+            // key the cassette on the file, not its contents
+            this.cassetteBody = file != null ? "@file:" + file : body;
+            this.extraHeaders = extraHeaders;
+            // Looked up once per template; arrays so the per-response lookup doesn't box the status
+            if (shapes == null) {
+                this.statuses = null;
+                this.shapes = null;
+            } else {
+                this.statuses = new int[shapes.size()];
+                this.shapes = new JsonShape[shapes.size()];
+                int i = 0;
+                for (var entry : shapes.entrySet()) {
+                    this.statuses[i] = entry.getKey();
+                    this.shapes[i++] = entry.getValue();
+                }
+            }
+        }
+
+        private Template(Template t, boolean gzip, String[] extraHeaders) {
+            this.kontrakt = t.kontrakt;
+            this.key = t.key;
+            this.method = t.method;
+            this.pathTemplate = t.pathTemplate;
+            this.url = t.url;
+            this.body = t.body;
+            this.file = t.file;
+            this.templated = t.templated;
+            this.gzip = gzip;
+            this.cassetteBody = t.cassetteBody;
+            this.extraHeaders = extraHeaders;
+            this.statuses = t.statuses;
+            this.shapes = t.shapes;
+        }
+
+        /** The same request, conditional on a fixed ETag. */
+        public Template ifNoneMatch(String etag) {
+            return new Template(this, gzip, withHeader(extraHeaders, "If-None-Match", etag));
+        }
+
+        /** The same request with its body sent gzip-compressed. */
+        public Template gzip() {
+            return new Template(this, true, withHeader(extraHeaders, "Content-Encoding", "gzip"));
+        }
+
+        public <T> HttpResponse<T> send(HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+            return send(request(), handler);
+        }
+
+        /** Conditional send with an ETag only known at run time (`if-none-match previous`). */
+        public <T> HttpResponse<T> sendIfNoneMatch(String etag, HttpResponse.BodyHandler<T> handler)
+                throws IOException, InterruptedException {
+            HttpRequest req = HttpRequest.newBuilder(request(), (name, value) -> true)
+                    .setHeader("If-None-Match", etag)
+                    .build();
+            return send(req, handler);
+        }
+
+        private <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> handler)
+                throws IOException, InterruptedException {
+            if (kontrakt.verbose) {
+                System.out.println("--> " + method + " " + url);
+                req.headers().firstValue("If-None-Match").ifPresent(etag -> System.out.println("    If-None-Match: " + etag));
+                if (file != null) {
+                    System.out.println("    body=<file " + file + ">");
+                } else if (body != null) {
+                    System.out.println("    body=" + body);
+                }
+            }
+
+            // Decode gzip/deflate responses before the handler sees them, counting wire bytes
+            AtomicLong wireBytes = new AtomicLong();
+            HttpResponse.BodyHandler<T> decoding = Compression.decoding(handler, wireBytes);
+            JfrEvents.Request event = new JfrEvents.Request();
+            event.begin();
+            HttpResponse<T> resp = null;
+            try {
+                resp = Latency.timed(key, () -> Cassette.send(kontrakt.client, req, cassetteBody, decoding));
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.test = Latency.currentTest();
+                    event.method = method;
+                    event.pathTemplate = pathTemplate;
+                    event.status = resp == null ? 0 : resp.statusCode();
+                    event.bytes = wireBytes.get();
+                    event.commit();
+                }
+            }
+
+            if (kontrakt.verbose) {
+                System.out.println("<-- status=" + resp.statusCode());
+                if (resp.body() instanceof String text) {
+                    System.out.println(text);
+                }
+            }
+            if (statuses != null) {
+                validate(resp);
+            }
+            return new SizedResponse<>(resp, wireBytes.get());
+        }
+
+        // Needs the whole body: the generator buffers every response when validating
+        private void validate(HttpResponse<?> resp) {
+            if (!(resp.body() instanceof String text) || text.isEmpty()) return;
+            int status = resp.statusCode();
+            JsonShape shape = null;
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i] == status) shape = shapes[i];
+            }
+            String type = resp.headers().firstValue("Content-Type").orElse("");
+            if (!type.toLowerCase(Locale.ROOT).contains("json")) {
+                if (shape != null) {
+                    schemaCheck(status, method + " " + url + " -> " + status
+                            + ": expected a JSON body " + shape + " but Content-Type was \"" + type + "\"");
+                }
+                return;
+            }
+            String problem = (shape != null ? shape : JsonShape.JSON).check(text);
+            schemaCheck(status, problem == null ? null
+                    : method + " " + url + " -> " + status + ": body doesn't match its schema: " + problem);
+        }
+
+        private void schemaCheck(int status, String failure) {
+            JfrEvents.schemaValidation(method, pathTemplate, status, failure);
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+        }
+
+        // "GET /users/$id #2" -> "/users/$id"
+        private static String pathTemplate(String key, String method) {
+            String path = key.startsWith(method + " ") ? key.substring(method.length() + 1) : key;
+            int repeat = path.lastIndexOf(" #");
+            return repeat == -1 ? path : path.substring(0, repeat);
+        }
+
+        private HttpRequest request() throws IOException {
+            HttpRequest req = request;
+            if (req == null) {
+                HttpRequest.BodyPublisher publisher;
+                if (file != null && gzip) {
+                    Path path = Path.of(file);
+                    if (!Files.isReadable(path)) throw new FileNotFoundException(path + " not found");
+                    publisher = HttpRequest.BodyPublishers.ofInputStream(() -> {
+                        try {
+                            InputStream raw = Files.newInputStream(path);
+                            return Compression.gzip(templated ? new TemplatedBody.TemplatingInputStream(raw, kontrakt.vars) : raw);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } else if (file != null) {
+                    publisher = templated
+                            ? TemplatedBody.ofFile(Path.of(file), kontrakt.vars)
+                            : HttpRequest.BodyPublishers.ofFile(Path.of(file));
+                } else if (body != null && gzip) {
+                    publisher = HttpRequest.BodyPublishers.ofByteArray(Compression.gzip(body.getBytes(StandardCharsets.UTF_8)));
+                } else if (body != null) {
+                    publisher = HttpRequest.BodyPublishers.ofString(body);
+                } else {
+                    publisher = HttpRequest.BodyPublishers.noBody();
+                }
+                HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                        .timeout(REQUEST_TIMEOUT)
+                        .method(method, publisher)
+                        .headers(kontrakt.headers);
+                if (extraHeaders.length > 0) builder.headers(extraHeaders);
+                req = builder.build();
+                request = req;
+            }
+            return req;
+        }
+    }
+
+    private static String[] withHeader(String[] headers, String name, String value) {
+        String[] result = Arrays.copyOf(headers, headers.length + 2);
+        result[headers.length] = name;
+        result[headers.length + 1] = value;
+        return result;
+    }
+
+    /** A response that also knows how many body bytes came over the wire. */
+    static final class SizedResponse<T> implements HttpResponse<T> {
+        private final HttpResponse<T> resp;
+        private final long wireBytes;
+
+        SizedResponse(HttpResponse<T> resp, long wireBytes) {
+            this.resp = resp;
+            this.wireBytes = wireBytes;
+        }
+
+        long wireBytes() { return wireBytes; }
+
+        @Override public int statusCode() { return resp.statusCode(); }
+        @Override public HttpRequest request() { return resp.request(); }
+        @Override public Optional<HttpResponse<T>> previousResponse() { return resp.previousResponse(); }
+        @Override public HttpHeaders headers() { return resp.headers(); }
+        @Override public T body() { return resp.body(); }
+        @Override public Optional<SSLSession> sslSession() { return resp.sslSession(); }
+        @Override public URI uri() { return resp.uri(); }
+        @Override public HttpClient.Version version() { return resp.version(); }
+    }
+
+    /** ETag of an earlier response in the test, for `if-none-match previous`. */
+    public static String etag(HttpResponse<?> resp) {
+        return resp.headers().firstValue("ETag").orElseThrow(() ->
+                new AssertionError("if-none-match previous: the previous response (status "
+                        + resp.statusCode() + ") had no ETag header"));
+    }
+
+    // ---------------------------------------------------------------------
+    // Assertions
+
+    // Types are the ast.Assertion types, as recorded in the JFR events
+
+    public static void expectStatus(HttpResponse<?> resp, int code) {
+        check("STATUS", resp.statusCode() == code ? null
+                : "expected status " + code + " but was " + resp.statusCode());
+    }
+
+    public static void expectStatusIn(HttpResponse<?> resp, int min, int max) {
+        check("STATUS_RANGE", resp.statusCode() >= min && resp.statusCode() <= max ? null
+                : "expected status in " + min + ".." + max + " but was " + resp.statusCode());
+    }
+
+    public static void expectHeader(HttpResponse<?> resp, String name, String value) {
+        String actual = resp.headers().firstValue(name).orElse("");
+        check("HEADER_EQUALS", actual.equals(value) ? null
+                : "expected header " + name + " = \"" + value + "\" but was \"" + actual + "\"");
+    }
+
+    public static void expectHeaderContains(HttpResponse<?> resp, String name, String substring) {
+        String actual = resp.headers().firstValue(name).orElse("");
+        check("HEADER_CONTAINS", actual.contains(substring) ? null
+                : "expected header " + name + " to contain \"" + substring + "\" but was \"" + actual + "\"");
+    }
+
+    /** Body bytes as received (compressed, if the server compressed them) must stay below `maxBytes`. */
+    public static void expectCompressedSizeBelow(HttpResponse<?> resp, long maxBytes) {
+        if (!(resp instanceof SizedResponse<?> sized)) {
+            check("COMPRESSED_SIZE_BELOW", "compressed size is only known for responses sent through a Kontrakt.Template");
+            return;
+        }
+        check("COMPRESSED_SIZE_BELOW", sized.wireBytes() < maxBytes ? null
+                : "expected compressed size < " + maxBytes + " bytes but was " + sized.wireBytes()
+                        + " (Content-Encoding: " + resp.headers().firstValue("Content-Encoding").orElse("identity") + ")");
+    }
+
+    /** Needles must be whitespace-free; the body is compared with its whitespace dropped. */
+    public static void expectBodyContains(HttpResponse<String> resp, String... needles) {
+        String body = withoutWhitespace(resp.body());
+        String shown = null; // the body as quoted in failures: built once, bounded
+        String first = null;
+        // One event per `body contains` the spec wrote, even when MergeBodyChecks folded them into one call
+        for (String needle : needles) {
+            String failure = null;
+            if (!body.contains(needle)) {
+                if (shown == null) shown = abbreviate(body);
+                failure = "expected body to contain " + needle + " but was " + shown;
+            }
+            JfrEvents.assertion("BODY_CONTAINS", failure);
+            if (first == null) first = failure;
+        }
+        if (first != null) {
+            throw new AssertionError(first);
+        }
+    }
+
+    // Records the evaluation, then fails the test if `failure` isn't null
+    private static void check(String type, String failure) {
+        JfrEvents.assertion(type, failure);
+        if (failure != null) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    // Bodies can be megabytes; a failure message (and its JFR event) only needs the start
+    private static String abbreviate(String body) {
+        if (body.length() <= SHOWN_BODY_CHARS) return body;
+        return body.substring(0, SHOWN_BODY_CHARS) + "... (" + body.length() + " chars)";
+    }
+
+    // Same normalization BodyMatch applies while streaming (a no-op on its output)
+    private static String withoutWhitespace(String text) {
+        if (text == null) return "";
+        StringBuilder out = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean ws = c == ' ' || c == '\n' || c == '\r' || c == '\t';
+            if (ws && out == null) {
+                out = new StringBuilder(text.length());
+                out.append(text, 0, i);
+            } else if (!ws && out != null) {
+                out.append(c);
+            }
+        }
+        return out == null ? text : out.toString();
+    }
+}
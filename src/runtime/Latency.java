@@ -0,0 +1,107 @@
+package runtime;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Latency samples for the performance gate (see PerfGate).
+ *
+ * Enabled with -Dkontrakt.latency=latency.tsv. Every timed request and every
+ * completed test adds one line to that file when the JVM exits:
+ *
+ *   test <TAB> request <TAB> nanos
+ *
+ * where `request` is "METHOD /path/template" as written in the spec (so it is
+ * the same across runs whatever the variables resolve to) and "*" stands for
+ * the whole test. Running the suite several times into the same file builds
+ * up a distribution per test and request. Failed tests and requests that
+ * threw (timeouts included) are sampled too - dropping them would bias the
+ * distribution toward the fast runs.
+ *
+ * Nothing is recorded while replaying a cassette - those timings say nothing
+ * about the backend.
+ *
+ * The test running on each thread is tracked either way: JFR events (see
+ * JfrEvents) carry it, and a recording can start at any time.
+ */
+public final class Latency {
+
+    /** A request send, as in Cassette.send(...). */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    public static final String WHOLE_TEST = "*";
+
+    private static final String PROPERTY = System.getProperty("kontrakt.latency");
+    private static final boolean ENABLED = PROPERTY != null && !PROPERTY.isEmpty()
+            && Cassette.mode() != Cassette.Mode.REPLAY;
+
+    private static final ConcurrentLinkedQueue<String> SAMPLES = new ConcurrentLinkedQueue<>();
+    // Test running on this thread, and when it started
+    private static final ThreadLocal<String> TEST = new ThreadLocal<>();
+    private static final ThreadLocal<Long> STARTED = new ThreadLocal<>();
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Latency::flush));
+        }
+    }
+
+    private Latency() {}
+
+    public static void begin(String test) {
+        TEST.set(test);
+        if (!ENABLED) return;
+        STARTED.set(System.nanoTime());
+    }
+
+    // Called from the generated test's finally block, whether it passed or not
+    public static void end() {
+        if (ENABLED && STARTED.get() != null) {
+            add(TEST.get(), WHOLE_TEST, System.nanoTime() - STARTED.get());
+            STARTED.remove();
+        }
+        TEST.remove();
+    }
+
+    /** The test running on this thread (set by begin), or null. */
+    static String currentTest() {
+        return TEST.get();
+    }
+
+    public static <T> T timed(String request, Call<T> call) throws IOException, InterruptedException {
+        if (!ENABLED) return call.call();
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            add(TEST.get(), request, System.nanoTime() - start);
+        }
+    }
+
+    private static void add(String test, String request, long nanos) {
+        SAMPLES.add((test == null ? "?" : test) + "\t" + request + "\t" + nanos);
+    }
+
+    private static void flush() {
+        if (SAMPLES.isEmpty()) return;
+        Path file = Paths.get(PROPERTY);
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String sample : SAMPLES) {
+                    w.write(sample);
+                    w.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("kontrakt: could not write latency samples to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package runtime;
+
+import java.io.*;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+
+/**
+ * Request body streamed from a file with $variables substituted on the fly.
+ *
+ * The file is never loaded whole: it is read through a small buffer and sent
+ * with chunked transfer encoding (the final length isn't known up front), so
+ * multi-hundred-MB payloads cost no more heap than small ones.
+ *
+ * A "$name" is replaced by the longest variable name that prefixes it, so with
+ * only `user` defined "$user_id" becomes "<user>_id", the same result the
+ * generator's inline substitution gives.
+ */
+public final class TemplatedBody {
+
+    private TemplatedBody() {}
+
+    public static HttpRequest.BodyPublisher ofFile(Path path, Map<String, String> variables)
+            throws FileNotFoundException {
+        if (!Files.isReadable(path)) {
+            throw new FileNotFoundException(path + " not found");
+        }
+        return HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return new TemplatingInputStream(Files.newInputStream(path), variables);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    static final class TemplatingInputStream extends FilterInputStream {
+        private static final int MAX_NAME = 256;
+
+        private final Map<String, String> variables;
+        private byte[] pending = new byte[0];
+        private int pendingPos = 0;
+
+        TemplatingInputStream(InputStream in, Map<String, String> variables) {
+            super(new PushbackInputStream(new BufferedInputStream(in, 64 * 1024), 1));
+            this.variables = variables;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pendingPos < pending.length) {
+                return pending[pendingPos++] & 0xff;
+            }
+            int b = in.read();
+            if (b != '$') return b;
+
+            // Collect the identifier after '$' (ASCII letters, digits, '_')
+            StringBuilder name = new StringBuilder();
+            int next;
+            while ((next = in.read()) != -1 && isNameChar(next) && name.length() < MAX_NAME) {
+                name.append((char) next);
+            }
+            if (next != -1) ((PushbackInputStream) in).unread(next);
+
+            pending = expand(name.toString()).getBytes(StandardCharsets.UTF_8);
+            pendingPos = 0;
+            return read();
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int count = 0;
+            while (count < len) {
+                int b = read();
+                if (b == -1) break;
+                buf[off + count++] = (byte) b;
+                // Hand back what we have instead of blocking for a full buffer
+                if (pendingPos >= pending.length && in.available() == 0) break;
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && read() != -1) skipped++;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private String expand(String name) {
+            for (int end = name.length(); end > 0; end--) {
+                String value = variables.get(name.substring(0, end));
+                if (value != null) return value + name.substring(end);
+            }
+            return "$" + name; // unknown variable: leave it as written
+        }
+
+        private static boolean isNameChar(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+    }
+}
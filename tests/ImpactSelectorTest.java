@@ -0,0 +1,210 @@
+import ast.HttpMethod;
+import ir.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImpactSelectorTest {
+
+    // Line numbers below are 1-based, as in a diff
+    private static final List<String> CONTROLLER = List.of(
+        /*  1 */ "package demo;",
+        /*  2 */ "",
+        /*  3 */ "@RestController",
+        /*  4 */ "@RequestMapping(\"/api\")",
+        /*  5 */ "public class UserController {",
+        /*  6 */ "",
+        /*  7 */ "    private final Map<Integer, String> users = new HashMap<>();",
+        /*  8 */ "",
+        /*  9 */ "    // Looks a user up",
+        /* 10 */ "    @GetMapping(\"/users/{id}\")",
+        /* 11 */ "    public String get(@PathVariable int id) {",
+        /* 12 */ "        return users.get(id); // \"}\" in a comment",
+        /* 13 */ "    }",
+        /* 14 */ "",
+        /* 15 */ "    @PostMapping(value = \"/users\", consumes = \"application/json\")",
+        /* 16 */ "    public String create(@RequestBody String body) {",
+        /* 17 */ "        String reply = \"\"\"",
+        /* 18 */ "            {\"created\": true,",
+        /* 19 */ "",
+        /* 20 */ "             \"brace\": \"}\"}",
+        /* 21 */ "            \"\"\";",
+        /* 22 */ "        return reply;",
+        /* 23 */ "    }",
+        /* 24 */ "",
+        /* 25 */ "    @RequestMapping(path = {\"/legacy\", \"/old\"}, method = RequestMethod.DELETE)",
+        /* 26 */ "    public void legacy() {",
+        /* 27 */ "        /* nothing { here */",
+        /* 28 */ "    }",
+        /* 29 */ "}");
+
+    private static final String SOURCE = String.join("\n", CONTROLLER);
+
+    @Test
+    void extractsRoutesWithTheClassPrefixAndHandlerSpans() {
+        List<String> routes = new ArrayList<>();
+        for (ImpactSelector.Route route : ImpactSelector.routes(SOURCE, ImpactSelector.mask(SOURCE))) {
+            routes.add(route + " " + route.firstLine + "-" + route.lastLine);
+        }
+
+        assertEquals(List.of(
+            "GET /api/users/{id} 10-13",
+            "POST /api/users 15-23",
+            "DELETE /api/legacy 25-28",
+            "DELETE /api/old 25-28"), routes);
+    }
+
+    @Test
+    void routesMatchResolvedPaths() {
+        ImpactSelector.Route route = new ImpactSelector.Route(List.of(HttpMethod.GET), "/api/users/{id}", 1, 1);
+
+        assertTrue(route.matches(HttpMethod.GET, "/api/users/42"));
+        assertTrue(route.matches(HttpMethod.GET, "/api/users/42/"));
+        assertFalse(route.matches(HttpMethod.PUT, "/api/users/42"));
+        assertFalse(route.matches(HttpMethod.GET, "/api/users"));
+        assertFalse(route.matches(HttpMethod.GET, "/api/users/42/roles"));
+        assertTrue(new ImpactSelector.Route(List.of(), "/api/users", 1, 1).matches(HttpMethod.DELETE, "/api/users"));
+    }
+
+    @Test
+    void maskBlanksCommentsAndLiteralsKeepingOffsets() {
+        String masked = ImpactSelector.mask(SOURCE);
+        String[] lines = masked.split("\n", -1);
+
+        assertEquals(SOURCE.length(), masked.length());
+        assertEquals(CONTROLLER.size(), lines.length);
+        assertEquals(CONTROLLER.get(9).length(), lines[9].length());
+        assertEquals("@GetMapping(\"\")", lines[9].replace(" ", ""));
+        assertEquals("return users.get(id);", lines[11].strip());
+        assertTrue(lines[19].isBlank(), "text block contents are blanked");
+        assertTrue(lines[26].isBlank(), "block comments are blanked");
+        // So the only braces left are the real ones
+        assertEquals(masked.chars().filter(c -> c == '{').count(), masked.chars().filter(c -> c == '}').count());
+    }
+
+    @Test
+    void stringAndTextBlockLinesAreCode() {
+        boolean[] code = ImpactSelector.codeLines(SOURCE);
+
+        assertEquals(CONTROLLER.size(), code.length);
+        for (int line : new int[] { 2, 6, 9, 27 }) assertFalse(code[line - 1], "line " + line);
+        for (int line : new int[] { 4, 12, 17, 18, 19, 20, 21 }) assertTrue(code[line - 1], "line " + line);
+        // A "//" inside a string doesn't start a comment
+        assertArrayEquals(new boolean[] { true, false }, ImpactSelector.codeLines("String url = \"http://x\";\n// y"));
+    }
+
+    @Test
+    void parsesHunksIntoChangedLines(@TempDir Path root) {
+        List<String> diff = List.of(
+            "diff --git a/backend/X.java b/backend/X.java",
+            "--- a/backend/X.java",
+            "+++ b/backend/X.java",
+            "@@ -5,2 +5,3 @@ class X {",
+            "+a", "+b", "+c", "-d", "-e",
+            "@@ -10 +12 @@",
+            "+f", "-g",
+            "@@ -20,2 +21,0 @@",
+            "-h", "-i",
+            "diff --git a/old.txt b/old.txt",
+            "deleted file mode 100644",
+            "--- a/old.txt",
+            "+++ /dev/null",
+            "@@ -1,2 +0,0 @@",
+            "-j", "-k");
+
+        Map<Path, Set<Integer>> changes = new ImpactSelector(root, "HEAD").parseDiff(diff, root);
+
+        assertEquals(Set.of(5, 6, 7, 12, 21), changes.get(root.resolve("backend/X.java")));
+        assertTrue(changes.get(root.resolve("old.txt")).contains(-1), "a deleted file counts as a whole");
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    void selectsTheTestsOfTheChangedHandler(@TempDir Path backend) throws Exception {
+        Path controller = backend(backend);
+
+        assertEquals(List.of("GetUser"), selected(backend, controller, 12));
+        assertEquals(List.of("Legacy"), selected(backend, controller, 28));
+    }
+
+    @Test
+    void commentAndBlankLineEditsSelectNothing(@TempDir Path backend) throws Exception {
+        Path controller = backend(backend);
+
+        assertEquals(List.of(), selected(backend, controller, 9, 14, 27));
+    }
+
+    @Test
+    void textBlockEditsSelectTheirHandler(@TempDir Path backend) throws Exception {
+        Path controller = backend(backend);
+
+        assertEquals(List.of("CreateUser"), selected(backend, controller, 19));
+        assertEquals(List.of("CreateUser"), selected(backend, controller, 20));
+    }
+
+    @Test
+    void sharedControllerCodeSelectsEveryRouteOfIt(@TempDir Path backend) throws Exception {
+        Path controller = backend(backend);
+
+        assertEquals(List.of("GetUser", "CreateUser", "Legacy"), selected(backend, controller, 7));
+    }
+
+    @Test
+    void anyOtherChangeRunsEverything(@TempDir Path backend) throws Exception {
+        backend(backend);
+        Path repository = backend.resolve("src/main/java/demo/UserRepository.java");
+
+        assertEquals(ALL, selected(backend, repository, 3));
+    }
+
+    @Test
+    void noDiffRunsEverything(@TempDir Path backend) throws Exception {
+        backend(backend);
+
+        assertEquals(ALL, names(new ImpactSelector(backend, "HEAD").select(program(), null)));
+    }
+
+    @Test
+    void docsAndBackendTestsAreIgnored(@TempDir Path backend) throws Exception {
+        backend(backend);
+
+        assertEquals(List.of(), selected(backend, backend.resolve("README.md"), 1));
+        assertEquals(List.of(), selected(backend, backend.resolve("src/test/java/demo/UserTests.java"), 1));
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static final List<String> ALL = List.of("GetUser", "CreateUser", "Legacy", "Health");
+
+    // A backend with the controller above and a repository; returns the controller
+    private static Path backend(Path dir) throws Exception {
+        Path sources = Files.createDirectories(dir.resolve("src/main/java/demo"));
+        Files.writeString(sources.resolve("UserRepository.java"), "package demo;\n\npublic class UserRepository {}\n");
+        return Files.writeString(sources.resolve("UserController.java"), SOURCE);
+    }
+
+    private static List<String> selected(Path backend, Path file, Integer... lines) throws Exception {
+        Map<Path, Set<Integer>> changes = Map.of(file.toAbsolutePath().normalize(), new TreeSet<>(List.of(lines)));
+        return names(new ImpactSelector(backend, "HEAD").select(program(), changes));
+    }
+
+    private static IrProgram program() {
+        return new IrProgram("http://localhost:8080", Map.of(), Map.of(), List.of(
+            test("GetUser", HttpMethod.GET, "/api/users/1"),
+            test("CreateUser", HttpMethod.POST, "/api/users"),
+            test("Legacy", HttpMethod.DELETE, "http://localhost:8080/api/old?force=true"),
+            test("Health", HttpMethod.GET, "/actuator/health")));
+    }
+
+    private static IrTest test(String name, HttpMethod method, String path) {
+        IrRequest request = new IrRequest(method, path, path, Map.of(), null, null, false);
+        return new IrTest(name, List.of(new IrExchange(request, List.of())));
+    }
+
+    private static List<String> names(IrProgram program) {
+        return program.getTests().stream().map(IrTest::getName).toList();
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.*;
+import java.util.stream.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerfGateTest {
+
+    // ---------------------------------------------------------------------
+    // percentile
+
+    @Test
+    void percentileIsNearestRank() {
+        List<Long> samples = List.of(50L, 10L, 30L, 20L, 40L);
+
+        assertEquals(30, PerfGate.percentile(samples, 0.50));
+        assertEquals(40, PerfGate.percentile(samples, 0.80));
+        assertEquals(50, PerfGate.percentile(samples, 0.81));
+        assertEquals(50, PerfGate.percentile(samples, 0.99));
+        assertEquals(50, PerfGate.percentile(samples, 1.0));
+        assertEquals(10, PerfGate.percentile(samples, 0.0));
+    }
+
+    @Test
+    void percentileOfTiesAndSingleSamples() {
+        List<Long> tied = List.of(1L, 9L, 1L, 1L);
+
+        assertEquals(1, PerfGate.percentile(tied, 0.50));
+        assertEquals(1, PerfGate.percentile(tied, 0.75));
+        assertEquals(9, PerfGate.percentile(tied, 0.76));
+        assertEquals(7, PerfGate.percentile(List.of(7L), 0.50));
+        assertEquals(7, PerfGate.percentile(List.of(7L), 0.99));
+    }
+
+    @Test
+    void percentileLeavesTheSamplesAlone() {
+        List<Long> samples = new ArrayList<>(List.of(3L, 1L, 2L));
+        PerfGate.percentile(samples, 0.5);
+
+        assertEquals(List.of(3L, 1L, 2L), samples);
+    }
+
+    // ---------------------------------------------------------------------
+    // mannWhitneyGreater
+
+    @Test
+    void smallPValueWhenTheFirstSampleIsLarger() {
+        // U = 9 of 9, z = (9 - 4.5 - 0.5) / sqrt(5.25)
+        assertEquals(0.040428, PerfGate.mannWhitneyGreater(longs(4, 5, 6), longs(1, 2, 3)), 1e-5);
+    }
+
+    @Test
+    void largePValueTheOtherWayRound() {
+        // "x is larger" is one-sided: a faster run must not look like a regression
+        assertEquals(0.985452, PerfGate.mannWhitneyGreater(longs(1, 2, 3), longs(4, 5, 6)), 1e-5);
+    }
+
+    @Test
+    void tiesShareTheirAverageRank() {
+        // U = 13 of 16; ties {2 x3, 3 x3} shrink the variance
+        assertEquals(0.086017, PerfGate.mannWhitneyGreater(longs(2, 3, 3, 4), longs(1, 2, 2, 3)), 1e-5);
+    }
+
+    @Test
+    void identicalSamplesAreNeverARegression() {
+        List<Long> same = Collections.nCopies(8, 10L);
+
+        assertEquals(1.0, PerfGate.mannWhitneyGreater(same, same));
+    }
+
+    @Test
+    void aSingleSampleEachProvesNothing() {
+        assertEquals(0.5, PerfGate.mannWhitneyGreater(longs(7), longs(3)), 1e-9);
+    }
+
+    @Test
+    void aConsistentShiftIsSignificantWithEnoughSamples() {
+        List<Long> before = LongStream.range(0, 30).map(i -> 100 + (i * 7) % 20).boxed().toList();
+        List<Long> after = before.stream().map(v -> v + 15).toList();
+
+        assertTrue(PerfGate.mannWhitneyGreater(after, before) < 0.001);
+        assertTrue(PerfGate.mannWhitneyGreater(before, after) > 0.999);
+        assertTrue(PerfGate.mannWhitneyGreater(before, before) > 0.4);
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static List<Long> longs(long... values) {
+        return LongStream.of(values).boxed().toList();
+    }
+}
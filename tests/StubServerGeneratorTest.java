@@ -0,0 +1,77 @@
+import ast.HttpMethod;
+import ir.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubServerGeneratorTest {
+
+    @Test
+    void warnsWhenARequestExpectsDifferentStatuses() {
+        StubServerGenerator generator = new StubServerGenerator();
+        String server = generator.generate(program(
+            test("GetUser", exchange(HttpMethod.GET, "/api/users/1", null, 200)),
+            test("DeleteUser",
+                exchange(HttpMethod.DELETE, "/api/users/1", null, 204),
+                exchange(HttpMethod.GET, "/api/users/1", null, 404))));
+
+        assertEquals(List.of("GET /api/users/1 is expected to answer [200, 404]; the stub always answers 200"),
+            generator.getWarnings());
+        // Both are generated, in spec order: the server serves the first
+        int ok = server.indexOf("stub(\"GET /api/users/1\", null, 200,");
+        int missing = server.indexOf("stub(\"GET /api/users/1\", null, 404,");
+        assertTrue(ok != -1 && missing != -1 && ok < missing, server);
+    }
+
+    @Test
+    void theFirstDeclaredStatusWins() {
+        StubServerGenerator generator = new StubServerGenerator();
+        String server = generator.generate(program(
+            test("GetMissingUser", exchange(HttpMethod.GET, "/api/users/9", null, 404)),
+            test("GetUser", exchange(HttpMethod.GET, "/api/users/9", null, 200))));
+
+        assertEquals(List.of("GET /api/users/9 is expected to answer [404, 200]; the stub always answers 404"),
+            generator.getWarnings());
+        assertTrue(server.indexOf("null, 404,") < server.indexOf("null, 200,"), server);
+    }
+
+    @Test
+    void noWarningWhenTheRequestsCanBeTold() {
+        StubServerGenerator generator = new StubServerGenerator();
+        generator.generate(program(
+            test("Login", exchange(HttpMethod.POST, "/api/login", "{\"password\": \"right\"}", 200)),
+            test("BadLogin", exchange(HttpMethod.POST, "/api/login", "{\"password\": \"wrong\"}", 401)),
+            test("GetUser", exchange(HttpMethod.GET, "/api/users/1", null, 200)),
+            test("GetUserAgain", exchange(HttpMethod.GET, "/api/users/1", null, 200))));
+
+        assertEquals(List.of(), generator.getWarnings());
+    }
+
+    @Test
+    void warningsAreForTheLastRunOnly() {
+        StubServerGenerator generator = new StubServerGenerator();
+        generator.generate(program(
+            test("A", exchange(HttpMethod.GET, "/x", null, 200)),
+            test("B", exchange(HttpMethod.GET, "/x", null, 500))));
+        String server = generator.generate(program(test("A", exchange(HttpMethod.GET, "/x", null, 200))));
+
+        assertEquals(List.of(), generator.getWarnings());
+        assertEquals(1, server.split("public class GeneratedStubServer", -1).length - 1);
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static IrProgram program(IrTest... tests) {
+        return new IrProgram("http://localhost:8080", Map.of(), Map.of(), List.of(tests));
+    }
+
+    private static IrTest test(String name, IrExchange... exchanges) {
+        return new IrTest(name, List.of(exchanges));
+    }
+
+    private static IrExchange exchange(HttpMethod method, String path, String body, int status) {
+        IrRequest request = new IrRequest(method, path, path, Map.of(), body, null, false);
+        return new IrExchange(request, List.of(new IrAssertion.Status(status)));
+    }
+}
@@ -0,0 +1,112 @@
+import ast.HttpMethod;
+import ir.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSchedulerTest {
+
+    @Test
+    void readsOfTheSameResourceShareAWave() {
+        var waves = schedule(
+            test("A", "GET /api/users/42"),
+            test("B", "GET /api/users/42"));
+
+        assertEquals(List.of(List.of("A", "B")), waves);
+    }
+
+    @Test
+    void aWriteAndAReadOfTheSameResourceConflict() {
+        var waves = schedule(
+            test("Update", "PUT /api/users/42"),
+            test("Get", "GET /api/users/42"));
+
+        assertEquals(List.of(List.of("Update"), List.of("Get")), waves);
+    }
+
+    @Test
+    void aWriteConflictsWithItsParentAndChildResources() {
+        var waves = schedule(
+            test("List", "GET /api/users"),
+            test("Create", "POST /api/users"),
+            test("Get", "GET /api/users/42"),
+            test("Delete", "DELETE /api/users/42/sessions"));
+
+        // Create writes the collection: after List, before Get (a child of it)
+        assertEquals(List.of(List.of("List"), List.of("Create"), List.of("Get"), List.of("Delete")), waves);
+    }
+
+    @Test
+    void writesToUnrelatedResourcesRunTogether() {
+        var waves = schedule(
+            test("UpdateUser", "PUT /api/users/42"),
+            test("DeleteUser", "DELETE /api/users/99"),
+            test("Login", "POST /api/login"));
+
+        assertEquals(List.of(List.of("UpdateUser", "DeleteUser", "Login")), waves);
+    }
+
+    @Test
+    void siblingPathPrefixesDontConflict() {
+        // /api/users/4 is not a parent of /api/users/42
+        var waves = schedule(
+            test("A", "PUT /api/users/4"),
+            test("B", "GET /api/users/42"));
+
+        assertEquals(List.of(List.of("A", "B")), waves);
+    }
+
+    @Test
+    void queryStringsAndTrailingSlashesAreTheSameResource() {
+        var waves = schedule(
+            test("Update", "PUT /api/users/42/"),
+            test("Get", "GET /api/users/42?fields=email"));
+
+        assertEquals(List.of(List.of("Update"), List.of("Get")), waves);
+    }
+
+    @Test
+    void everyExchangeOfATestCounts() {
+        var waves = schedule(
+            test("ReadThenWrite", "GET /api/login", "PUT /api/users/7"),
+            test("Read", "GET /api/users/7"));
+
+        assertEquals(List.of(List.of("ReadThenWrite"), List.of("Read")), waves);
+    }
+
+    @Test
+    void aTestGoesRightAfterTheLatestTestItConflictsWith() {
+        var waves = schedule(
+            test("W1", "PUT /api/users/1"),
+            test("R1", "GET /api/users/1"),
+            test("W2", "PUT /api/users/2"),
+            test("R1Again", "GET /api/users/1"));
+
+        // W2 conflicts with nothing before it; R1Again only with W1
+        assertEquals(List.of(List.of("W1", "W2"), List.of("R1", "R1Again")), waves);
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static List<List<String>> schedule(IrTest... tests) {
+        IrProgram program = new IrProgram("http://localhost:8080", Map.of(), Map.of(), List.of(tests));
+        List<List<String>> names = new ArrayList<>();
+        for (List<IrTest> wave : new TestScheduler().schedule(program)) {
+            names.add(wave.stream().map(IrTest::getName).toList());
+        }
+        return names;
+    }
+
+    // "METHOD path" per exchange
+    private static IrTest test(String name, String... requests) {
+        List<IrExchange> exchanges = new ArrayList<>();
+        for (String request : requests) {
+            String[] parts = request.split(" ", 2);
+            exchanges.add(new IrExchange(
+                new IrRequest(HttpMethod.valueOf(parts[0]), parts[1], parts[1], Map.of(), null, null, false),
+                List.of()));
+        }
+        return new IrTest(name, exchanges);
+    }
+}
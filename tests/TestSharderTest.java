@@ -0,0 +1,92 @@
+import ir.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSharderTest {
+
+    private static final List<String> NAMES = List.of(
+        "Login", "GetUser", "UpdateUser", "DeleteUser", "GetMissingUser", "BadLogin",
+        "ListUsers", "CreateUser", "BulkCreate", "BulkDelete", "CompressedList", "Upload");
+
+    @Test
+    void everyTestLandsInExactlyOneShard() {
+        for (int n = 1; n <= 5; n++) {
+            List<String> all = new ArrayList<>();
+            for (int i = 1; i <= n; i++) {
+                all.addAll(names(TestSharder.parse(i + "/" + n, null).select(program(NAMES))));
+            }
+            assertEquals(new HashSet<>(NAMES), new HashSet<>(all), n + " shards");
+            assertEquals(NAMES.size(), all.size(), n + " shards");
+        }
+    }
+
+    @Test
+    void theSplitDoesntDependOnTheOtherTests() {
+        // A test stays on its shard when others are added or removed
+        List<String> before = names(new TestSharder(2, 3, null).select(program(NAMES)));
+        List<String> grown = new ArrayList<>(NAMES);
+        grown.add("AnotherTest");
+        List<String> after = names(new TestSharder(2, 3, null).select(program(grown)));
+
+        after.remove("AnotherTest");
+        assertEquals(before, after);
+    }
+
+    @Test
+    void shardsKeepTheDeclaredOrder() {
+        List<String> shard = names(new TestSharder(1, 2, null).select(program(NAMES)));
+        List<String> declared = new ArrayList<>(NAMES);
+        declared.retainAll(shard);
+
+        assertEquals(declared, shard);
+    }
+
+    @Test
+    void durationsBalanceTheShards() {
+        Map<String, Double> durations = Map.of("Slow", 10.0, "A", 3.0, "B", 3.0, "C", 2.0, "D", 2.0);
+        List<String> tests = List.of("A", "B", "Slow", "C", "D");
+
+        // Longest first onto the lightest shard: Slow | A B C D
+        assertEquals(List.of("Slow"), names(new TestSharder(1, 2, durations).select(program(tests))));
+        assertEquals(List.of("A", "B", "C", "D"), names(new TestSharder(2, 2, durations).select(program(tests))));
+    }
+
+    @Test
+    void testsWithoutHistoryCountAsAnAverageOne() {
+        Map<String, Double> durations = Map.of("A", 4.0, "B", 2.0);
+
+        // New weighs 3: A | B New
+        assertEquals(List.of("A"), names(new TestSharder(1, 2, durations).select(program(List.of("A", "B", "New")))));
+    }
+
+    @Test
+    void rejectsBadShardSpecs() {
+        for (String spec : List.of("0/2", "3/2", "1/0", "1", "a/b", "1/2/3")) {
+            assertThrows(IllegalArgumentException.class, () -> TestSharder.parse(spec, null), spec);
+        }
+    }
+
+    @Test
+    void readsDurationsSkippingJunk(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("durations.tsv");
+        Files.writeString(file, "# test\tseconds\nLogin\t0.25\nbroken line\nGetUser\tslow\nUpload\t1.5\n");
+
+        assertEquals(Map.of("Login", 0.25, "Upload", 1.5), TestSharder.readDurations(file));
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static IrProgram program(List<String> names) {
+        List<IrTest> tests = new ArrayList<>();
+        for (String name : names) tests.add(new IrTest(name, List.of()));
+        return new IrProgram("http://localhost:8080", Map.of(), Map.of(), tests);
+    }
+
+    private static List<String> names(IrProgram program) {
+        return new ArrayList<>(program.getTests().stream().map(IrTest::getName).toList());
+    }
+}
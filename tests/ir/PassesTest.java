@@ -0,0 +1,168 @@
+package ir;
+
+import ast.HttpMethod;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassesTest {
+
+    // ---------------------------------------------------------------------
+    // FoldConstants
+
+    @Test
+    void foldsASingleCodeRangeIntoAStatus() {
+        assertEquals(List.of(new IrAssertion.Status(204)),
+            new FoldConstants().run(List.of(new IrAssertion.StatusRange(204, 204))));
+    }
+
+    @Test
+    void dropsAlwaysTrueContainsChecks() {
+        var result = new FoldConstants().run(List.of(
+            new IrAssertion.HeaderContains("X-Id", ""),
+            body("", "  \n", "\"id\""),
+            body(" ")));
+
+        assertEquals(List.of(body("\"id\"")), result);
+    }
+
+    @Test
+    void leavesEverythingElseAlone() {
+        var assertions = List.<IrAssertion>of(
+            new IrAssertion.StatusRange(200, 299),
+            new IrAssertion.HeaderContains("Content-Type", "json"),
+            new IrAssertion.CompressedSizeBelow(2048));
+
+        assertEquals(assertions, new FoldConstants().run(assertions));
+    }
+
+    // ---------------------------------------------------------------------
+    // DeduplicateAssertions
+
+    @Test
+    void keepsTheFirstOfRepeatedAssertions() {
+        var result = new DeduplicateAssertions().run(List.of(
+            new IrAssertion.Status(200),
+            new IrAssertion.HeaderEquals("Content-Type", "application/json"),
+            new IrAssertion.Status(200),
+            new IrAssertion.HeaderEquals("content-type", "application/json")));
+
+        assertEquals(List.of(
+            new IrAssertion.Status(200),
+            new IrAssertion.HeaderEquals("Content-Type", "application/json")), result);
+    }
+
+    @Test
+    void headerValuesStayCaseSensitive() {
+        var assertions = List.<IrAssertion>of(
+            new IrAssertion.HeaderEquals("X-Mode", "on"),
+            new IrAssertion.HeaderEquals("X-Mode", "ON"));
+
+        assertEquals(assertions, new DeduplicateAssertions().run(assertions));
+    }
+
+    // ---------------------------------------------------------------------
+    // DropSubsumedAssertions
+
+    @Test
+    void aStatusImpliesARangeThatIncludesIt() {
+        var result = new DropSubsumedAssertions().run(List.of(
+            new IrAssertion.StatusRange(200, 299),
+            new IrAssertion.Status(201)));
+
+        assertEquals(List.of(new IrAssertion.Status(201)), result);
+    }
+
+    @Test
+    void aStatusOutsideTheRangeImpliesNothing() {
+        var assertions = List.<IrAssertion>of(
+            new IrAssertion.StatusRange(200, 299),
+            new IrAssertion.Status(404));
+
+        assertEquals(assertions, new DropSubsumedAssertions().run(assertions));
+    }
+
+    @Test
+    void aHeaderValueImpliesContainsChecksOnIt() {
+        var result = new DropSubsumedAssertions().run(List.of(
+            new IrAssertion.HeaderContains("content-type", "json"),
+            new IrAssertion.HeaderContains("Content-Type", "application/json"),
+            new IrAssertion.HeaderEquals("Content-Type", "application/json; charset=UTF-8"),
+            new IrAssertion.HeaderContains("Cache-Control", "no-cache")));
+
+        assertEquals(List.of(
+            new IrAssertion.HeaderEquals("Content-Type", "application/json; charset=UTF-8"),
+            new IrAssertion.HeaderContains("Cache-Control", "no-cache")), result);
+    }
+
+    @Test
+    void theTightestCompressedSizeBoundWins() {
+        var result = new DropSubsumedAssertions().run(List.of(
+            new IrAssertion.CompressedSizeBelow(20 * 1024),
+            new IrAssertion.CompressedSizeBelow(2 * 1024)));
+
+        assertEquals(List.of(new IrAssertion.CompressedSizeBelow(2 * 1024)), result);
+    }
+
+    // ---------------------------------------------------------------------
+    // MergeBodyChecks
+
+    @Test
+    void mergesAdjacentBodyChecksInOrder() {
+        var result = new MergeBodyChecks().run(List.of(
+            new IrAssertion.Status(200),
+            body("\"a\": 1"),
+            body("\"b\": 2", "\"c\": 3")));
+
+        assertEquals(List.of(new IrAssertion.Status(200), body("\"a\": 1", "\"b\": 2", "\"c\": 3")), result);
+    }
+
+    @Test
+    void anotherAssertionEndsARun() {
+        var result = new MergeBodyChecks().run(List.of(
+            body("\"a\""),
+            new IrAssertion.Status(200),
+            body("\"b\"")));
+
+        assertEquals(List.of(body("\"a\""), new IrAssertion.Status(200), body("\"b\"")), result);
+    }
+
+    @Test
+    void dropsFragmentsALongerOneContains() {
+        // Whitespace doesn't count: "\"id\":42" is inside "\"id\": 42"
+        var result = new MergeBodyChecks().run(List.of(
+            body("\"id\""),
+            body("\"id\": 42"),
+            body("\"id\":42"),
+            body("\"name\"")));
+
+        assertEquals(List.of(body("\"id\": 42", "\"name\"")), result);
+    }
+
+    // ---------------------------------------------------------------------
+    // The standard pipeline
+
+    @Test
+    void standardOptimizerRewritesEveryExchange() {
+        IrExchange exchange = new IrExchange(
+            new IrRequest(HttpMethod.GET, "/api/users/$id", "/api/users/42", Map.of(), null, null, false),
+            List.of(
+                new IrAssertion.StatusRange(200, 200),
+                new IrAssertion.StatusRange(200, 299),
+                body("\"id\""),
+                body("\"id\": 42"),
+                new IrAssertion.HeaderContains("X-Trace", ""),
+                new IrAssertion.Status(200)));
+        IrProgram program = new IrProgram("http://localhost:8080", Map.of(), Map.of(),
+            List.of(new IrTest("GetUser", List.of(exchange))));
+
+        Optimizer.standard().optimize(program);
+
+        assertEquals(List.of(new IrAssertion.Status(200), body("\"id\": 42")), exchange.getAssertions());
+    }
+
+    private static IrAssertion.BodyContains body(String... fragments) {
+        return new IrAssertion.BodyContains(List.of(fragments));
+    }
+}
@@ -0,0 +1,143 @@
+package runtime;
+
+import java.net.http.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodyMatchTest {
+
+    @Test
+    void findsANeedleSplitAcrossBuffers() {
+        Feed feed = new Feed("\"username\"");
+
+        feed.send("{\"id\": 1, \"user");
+        assertFalse(feed.done());
+        feed.send("name\": \"ann\", \"email\": \"ann@example.com\"}");
+
+        assertTrue(feed.cancelled, "the rest of the body isn't needed");
+        assertTrue(feed.body().contains("\"username\""), feed.body());
+    }
+
+    @Test
+    void findsANeedleThatStartedWellBeforeTheNewBuffer() {
+        // Only the tail of what was already searched is rescanned; it must cover the needle
+        Feed feed = new Feed("\"status\":\"active\"");
+
+        feed.send("{\"padding\": \"" + "x".repeat(500) + "\", \"sta");
+        feed.send("tus\"");
+        feed.send(": ");
+        feed.send("\"act");
+        assertFalse(feed.done());
+        feed.send("ive\"}");
+
+        assertTrue(feed.cancelled);
+    }
+
+    @Test
+    void carriesAMultiByteCharacterSplitAcrossBuffers() {
+        Feed feed = new Feed("\"name\":\"Zoë€😀\"");
+        byte[] body = "{\"name\": \"Zoë€😀\", \"more\": true}".getBytes(StandardCharsets.UTF_8);
+
+        // Cut inside ë (2 bytes), € (3 bytes) and 😀 (4 bytes)
+        int e = indexOf(body, (byte) 0xc3) + 1;
+        int euro = indexOf(body, (byte) 0xe2) + 2;
+        int smiley = indexOf(body, (byte) 0xf0) + 1;
+        feed.send(Arrays.copyOfRange(body, 0, e));
+        feed.send(Arrays.copyOfRange(body, e, euro));
+        feed.send(Arrays.copyOfRange(body, euro, smiley));
+        feed.send(Arrays.copyOfRange(body, smiley, body.length));
+
+        assertTrue(feed.cancelled);
+        assertFalse(feed.body().contains("�"), feed.body());
+    }
+
+    @Test
+    void byteByByteStillMatches() {
+        Feed feed = new Feed("\"é\"", "\"b\"");
+        for (byte b : "[\"a\", \"é\", \"b\", \"c\"]".getBytes(StandardCharsets.UTF_8)) {
+            feed.send(new byte[] { b });
+        }
+
+        assertTrue(feed.cancelled);
+        assertEquals("[\"a\",\"é\",\"b\"", feed.body());
+    }
+
+    @Test
+    void aMissingNeedleReadsTheWholeBody() {
+        Feed feed = new Feed("\"id\"", "\"missing\"");
+
+        feed.send("{\"id\": 1,\n");
+        feed.send("  \"name\": \"ann\"}");
+        feed.complete();
+
+        assertFalse(feed.cancelled);
+        assertEquals("{\"id\":1,\"name\":\"ann\"}", feed.body());
+    }
+
+    @Test
+    void aCharacterCutOffByTheEndOfTheBodyIsReplaced() {
+        byte[] body = "\"café\"".getBytes(StandardCharsets.UTF_8);
+        Feed feed = new Feed("\"none\"");
+
+        feed.send(Arrays.copyOf(body, body.length - 2)); // ends inside é
+        feed.complete();
+
+        assertEquals("\"caf�", feed.body());
+    }
+
+    @Test
+    void noNeedlesNeedNoBody() {
+        Feed feed = new Feed();
+
+        assertTrue(feed.done());
+        assertTrue(feed.cancelled);
+        assertEquals("", feed.body());
+    }
+
+    // ---------------------------------------------------------------------
+
+    // Pushes buffers into a BodyMatch subscriber the way the HttpClient would
+    private static final class Feed {
+        final HttpResponse.BodySubscriber<String> subscriber;
+        boolean cancelled;
+
+        Feed(String... needles) {
+            subscriber = BodyMatch.untilFound(needles).apply(null);
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {}
+                public void cancel() { cancelled = true; }
+            });
+        }
+
+        void send(String text) {
+            send(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void send(byte[] bytes) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(bytes)));
+        }
+
+        void complete() {
+            subscriber.onComplete();
+        }
+
+        boolean done() {
+            return subscriber.getBody().toCompletableFuture().isDone();
+        }
+
+        String body() {
+            assertTrue(done(), "body not complete");
+            return subscriber.getBody().toCompletableFuture().join();
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte b) {
+        for (int i = 0; i < bytes.length; i++) if (bytes[i] == b) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,128 @@
+package runtime;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CassetteTest {
+
+    private static final HttpRequest GET_42 = HttpRequest.newBuilder(URI.create("http://localhost:8080/api/users/42"))
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+
+    @Test
+    void repeatsOfARequestReplayInRecordedOrder() throws IOException {
+        Tape tape = new Tape();
+        int first = tape.record("ReadWriteRead", GET_42, null, 200);
+        tape.record("ReadWriteRead", put42(), "{\"role\":\"ADMIN\"}", 200);
+        int second = tape.record("ReadWriteRead", GET_42, null, 200);
+
+        Cassette.Recordings gets = Cassette.index(tape.buffer()).get(Cassette.Key.of("ReadWriteRead", GET_42, null));
+
+        assertEquals(List.of(first, second), gets.offsets);
+        assertEquals(first, gets.next());
+        assertEquals(second, gets.next());
+        assertEquals(-1, gets.next(), "a third GET was never recorded");
+        assertEquals(2, gets.used());
+    }
+
+    @Test
+    void theSameRequestInAnotherTestIsAnotherKey() throws IOException {
+        Tape tape = new Tape();
+        int a = tape.record("A", GET_42, null, 200);
+        int b = tape.record("B", GET_42, null, 404);
+
+        Map<Cassette.Key, Cassette.Recordings> index = Cassette.index(tape.buffer());
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(a), index.get(Cassette.Key.of("A", GET_42, null)).offsets);
+        assertEquals(List.of(b), index.get(Cassette.Key.of("B", GET_42, null)).offsets);
+    }
+
+    @Test
+    void requestBodiesAreKeptApart() throws IOException {
+        Tape tape = new Tape();
+        tape.record("Update", put42(), "{\"role\":\"ADMIN\"}", 200);
+        tape.record("Update", put42(), "{\"role\":\"USER\"}", 200);
+
+        Map<Cassette.Key, Cassette.Recordings> index = Cassette.index(tape.buffer());
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.get(Cassette.Key.of("Update", put42(), "{\"role\":\"USER\"}")).offsets.size());
+        assertNull(index.get(Cassette.Key.of("Update", put42(), null)));
+    }
+
+    @Test
+    void headerNamesAndOrderDontChangeTheKey() {
+        HttpRequest a = HttpRequest.newBuilder(URI.create("http://localhost:8080/api/users"))
+                .header("Accept", "application/json").header("X-Trace", "1").build();
+        HttpRequest b = HttpRequest.newBuilder(URI.create("http://localhost:8080/api/users"))
+                .header("x-trace", "1").header("accept", "application/json").build();
+        HttpRequest c = HttpRequest.newBuilder(URI.create("http://localhost:8080/api/users"))
+                .header("Accept", "application/json").header("X-Trace", "2").build();
+
+        assertEquals(Cassette.Key.of("T", a, null), Cassette.Key.of("T", b, null));
+        assertNotEquals(Cassette.Key.of("T", a, null), Cassette.Key.of("T", c, null));
+    }
+
+    @Test
+    void rejectsOldAndForeignFiles() {
+        ByteBuffer v1 = ByteBuffer.allocate(4).putInt(0, 0x4B435331); // "KCS1"
+        IOException old = assertThrows(IOException.class, () -> Cassette.index(v1));
+        assertTrue(old.getMessage().contains("older version"), old.getMessage());
+
+        ByteBuffer junk = ByteBuffer.wrap("{\"not\": \"a cassette\"}".getBytes());
+        assertThrows(IOException.class, () -> Cassette.index(junk));
+    }
+
+    @Test
+    void anEmptyRecordingHasNoKeys() throws IOException {
+        assertTrue(Cassette.index(new Tape().buffer()).isEmpty());
+    }
+
+    private static HttpRequest put42() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:8080/api/users/42"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    // Writes records in the cassette layout, remembering where each one starts
+    private static final class Tape {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Tape() throws IOException {
+            out.writeInt(0x4B435332); // "KCS2"
+        }
+
+        int record(String test, HttpRequest request, String body, int status) throws IOException {
+            Cassette.Key key = Cassette.Key.of(test, request, body);
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream rec = new DataOutputStream(record);
+            rec.writeUTF(key.test);
+            rec.writeUTF(key.method);
+            rec.writeUTF(key.url);
+            rec.writeLong(key.headerDigest);
+            rec.writeLong(key.bodyDigest);
+            rec.writeInt(status);
+            rec.writeShort(0);
+            rec.writeInt(0);
+
+            out.writeInt(record.size());
+            int start = out.size();
+            record.writeTo(out);
+            return start;
+        }
+
+        ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes.toByteArray());
+        }
+    }
+}
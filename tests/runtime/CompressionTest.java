@@ -0,0 +1,173 @@
+package runtime;
+
+import java.io.*;
+import java.net.http.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static final String BODY = "{\"users\": [" + "{\"username\": \"user1\"},".repeat(2000) + "{}]}";
+
+    @Test
+    void inflatesGzipWhateverTheChunking() throws Exception {
+        byte[] gzipped = Compression.gzip(bytes(BODY));
+        for (int chunk : new int[] { 1, 7, 4096, gzipped.length }) {
+            AtomicLong wire = new AtomicLong();
+            assertEquals(BODY, decode("gzip", gzipped, chunk, wire), "chunks of " + chunk);
+            assertEquals(gzipped.length, wire.get(), "wire bytes are counted before inflating");
+        }
+    }
+
+    @Test
+    void skipsOptionalGzipHeaderFields() throws Exception {
+        byte[] plain = Compression.gzip(bytes(BODY));
+        // Same member with FEXTRA, FNAME and FCOMMENT set
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(plain, 0, 3);
+        out.write(4 | 8 | 16);
+        out.write(plain, 4, 6);
+        out.write(new byte[] { 3, 0, 'x', 'y', 'z' });
+        out.write(bytes("users.json\0a comment\0"));
+        out.write(plain, 10, plain.length - 10);
+
+        assertEquals(BODY, decode("gzip", out.toByteArray(), 5, new AtomicLong()));
+    }
+
+    @Test
+    void inflatesZlibAndRawDeflate() throws Exception {
+        assertEquals(BODY, decode("deflate", deflate(BODY, false), 100, new AtomicLong()));
+        assertEquals(BODY, decode("deflate", deflate(BODY, true), 100, new AtomicLong()));
+    }
+
+    @Test
+    void passesOtherEncodingsThrough() throws Exception {
+        AtomicLong wire = new AtomicLong();
+        assertEquals(BODY, decode("", bytes(BODY), 1000, wire));
+        assertEquals(bytes(BODY).length, wire.get());
+    }
+
+    @Test
+    void failsOnATruncatedBody() {
+        byte[] gzipped = Compression.gzip(bytes(BODY));
+        byte[] cut = Arrays.copyOf(gzipped, gzipped.length / 2);
+
+        var e = assertThrows(ExecutionException.class, () -> decode("gzip", cut, 64, new AtomicLong()));
+        assertInstanceOf(EOFException.class, e.getCause());
+    }
+
+    @Test
+    void failsOnACorruptBody() {
+        byte[] gzipped = Compression.gzip(bytes(BODY));
+        for (int i = 10; i < gzipped.length - 8; i++) gzipped[i] = (byte) 0xff;
+
+        var e = assertThrows(ExecutionException.class, () -> decode("gzip", gzipped, 64, new AtomicLong()));
+        assertInstanceOf(ZipException.class, e.getCause());
+    }
+
+    @Test
+    void failsWhenTheGzipTrailerIsMissing() {
+        byte[] gzipped = Compression.gzip(bytes(BODY));
+        for (int cut : new int[] { 8, 3 }) {
+            byte[] shorter = Arrays.copyOf(gzipped, gzipped.length - cut);
+
+            var e = assertThrows(ExecutionException.class, () -> decode("gzip", shorter, 64, new AtomicLong()));
+            assertInstanceOf(EOFException.class, e.getCause(), cut + " trailer bytes missing");
+        }
+    }
+
+    @Test
+    void checksTheGzipTrailer() {
+        for (int at : new int[] { 8, 4 }) { // a CRC32 byte, an ISIZE byte
+            byte[] gzipped = Compression.gzip(bytes(BODY));
+            gzipped[gzipped.length - at] ^= 1;
+
+            var e = assertThrows(ExecutionException.class, () -> decode("gzip", gzipped, 1, new AtomicLong()));
+            assertInstanceOf(ZipException.class, e.getCause());
+            assertTrue(e.getCause().getMessage().contains(at == 8 ? "CRC32" : "size"), e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void discardedBodiesAreCountedButNotInflated() throws Exception {
+        // Not valid gzip at all: inflating it would fail
+        byte[] garbage = bytes(BODY);
+        AtomicLong wire = new AtomicLong();
+
+        assertNull(decode("gzip", garbage, 100, wire, HttpResponse.BodyHandlers.discarding()));
+        assertEquals(garbage.length, wire.get());
+    }
+
+    @Test
+    void failsOnABodyThatIsntGzip() {
+        var e = assertThrows(ExecutionException.class, () -> decode("gzip", bytes(BODY), 64, new AtomicLong()));
+        assertInstanceOf(ZipException.class, e.getCause());
+    }
+
+    @Test
+    void gzipsRequestBodies() throws IOException {
+        assertEquals(BODY, gunzip(Compression.gzip(bytes(BODY))));
+        assertEquals(BODY, gunzip(Compression.gzip(new ByteArrayInputStream(bytes(BODY))).readAllBytes()));
+        assertEquals("", gunzip(Compression.gzip(new ByteArrayInputStream(new byte[0])).readAllBytes()));
+    }
+
+    // ---------------------------------------------------------------------
+
+    // Pushes `body` through Compression.decoding in `chunk`-sized pieces, like the HttpClient would
+    private static String decode(String encoding, byte[] body, int chunk, AtomicLong wireBytes)
+            throws InterruptedException, ExecutionException {
+        return decode(encoding, body, chunk, wireBytes, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static <T> T decode(String encoding, byte[] body, int chunk, AtomicLong wireBytes,
+                                HttpResponse.BodyHandler<T> handler)
+            throws InterruptedException, ExecutionException {
+        Map<String, List<String>> headers = encoding.isEmpty() ? Map.of() : Map.of("Content-Encoding", List.of(encoding));
+        HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo() {
+            public int statusCode() { return 200; }
+            public HttpHeaders headers() { return HttpHeaders.of(headers, (name, value) -> true); }
+            public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+        };
+
+        HttpResponse.BodySubscriber<T> subscriber = Compression.decoding(handler, wireBytes).apply(info);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {}
+            public void cancel() {}
+        });
+        for (int i = 0; i < body.length; i += chunk) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(body, i, Math.min(chunk, body.length - i)).slice()));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+
+    private static byte[] deflate(String text, boolean raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+            stream.write(bytes(text));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] gzipped) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
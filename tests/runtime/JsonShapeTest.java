@@ -0,0 +1,98 @@
+package runtime;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonShapeTest {
+
+    private static final JsonShape USER = JsonShape.JSON
+            .property("id", JsonShape.Type.NUMBER)
+            .property("username", JsonShape.Type.STRING)
+            .property("active", JsonShape.Type.BOOLEAN)
+            .property("roles", JsonShape.Type.ARRAY)
+            .property("manager", JsonShape.Type.ANY);
+
+    @Test
+    void acceptsWellFormedJson() {
+        for (String json : List.of(
+                "{}", "[]", "0", "-1.5e+3", "\"\\u00e9\\n\"", "true", "null",
+                " { \"a\" : [ 1 , { \"b\" : [] } ] } ",
+                "{\"nested\": {\"deeper\": [[[\"x\"]]]}}")) {
+            assertNull(JsonShape.JSON.check(json), json);
+        }
+    }
+
+    @Test
+    void reportsMalformedJsonWithItsOffset() {
+        Map<String, String> cases = Map.of(
+                "{\"a\": 1,}", "offset 8",
+                "{\"a\" 1}", "expected ':'",
+                "[1 2]", "expected ',' or ']'",
+                "\"open", "unterminated string",
+                "01", "unexpected content",
+                "tru", "expected a value",
+                "1.", "expected a digit",
+                "\"\\x\"", "bad escape",
+                "{} {}", "unexpected content after the JSON value",
+                "", "unexpected end of input");
+        cases.forEach((json, message) -> {
+            String problem = JsonShape.JSON.check(json);
+            assertNotNull(problem, json);
+            assertTrue(problem.startsWith("malformed JSON"), problem);
+            assertTrue(problem.contains(message), json + " -> " + problem);
+        });
+    }
+
+    @Test
+    void rejectsAbsurdNesting() {
+        String deep = "[".repeat(600) + "]".repeat(600);
+
+        assertTrue(JsonShape.JSON.check(deep).contains("nested too deeply"));
+    }
+
+    @Test
+    void checksTheTypesOfListedProperties() {
+        assertNull(USER.check("{\"id\": 1, \"username\": \"ann\", \"active\": true, \"roles\": [], \"manager\": null}"));
+        assertEquals("$.id: expected number but was string", USER.check("{\"id\": \"1\"}"));
+        assertEquals("$.roles: expected array but was object", USER.check("{\"username\": \"ann\", \"roles\": {}}"));
+    }
+
+    @Test
+    void missingAndUnlistedPropertiesAreFine() {
+        assertNull(USER.check("{\"email\": \"ann@example.com\", \"extra\": [1, 2]}"));
+    }
+
+    @Test
+    void onlyTopLevelPropertiesAreChecked() {
+        assertNull(USER.check("{\"team\": {\"id\": \"not a number\"}}"));
+    }
+
+    @Test
+    void propertiesOnlyApplyToAnObjectRoot() {
+        // Like the published schema, which has no root `type: object`
+        assertNull(USER.check("[{\"id\": \"1\"}]"));
+        assertNull(USER.check("\"just a string\""));
+    }
+
+    @Test
+    void reportsTheFirstMismatchOnly() {
+        assertEquals("$.id: expected number but was boolean",
+                USER.check("{\"id\": true, \"username\": 7}"));
+    }
+
+    @Test
+    void malformedJsonWinsOverAMismatch() {
+        assertTrue(USER.check("{\"id\": \"1\", ").startsWith("malformed JSON"));
+    }
+
+    @Test
+    void shapesAreImmutable() {
+        JsonShape base = JsonShape.JSON.property("id", JsonShape.Type.NUMBER);
+        base.property("name", JsonShape.Type.STRING);
+
+        assertEquals("{id: number}", base.toString());
+        assertEquals("{}", JsonShape.JSON.toString());
+    }
+}
@@ -0,0 +1,53 @@
+package runtime;
+
+import java.net.URI;
+import java.net.http.*;
+import java.util.*;
+import javax.net.ssl.SSLSession;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KontraktTest {
+
+    @Test
+    void bodyContainsIgnoresWhitespace() {
+        Kontrakt.expectBodyContains(response("{ \"id\": 1,\n  \"name\": \"ann\" }"), "\"id\":1", "\"name\":\"ann\"");
+    }
+
+    @Test
+    void bodyContainsReportsTheFirstMissingNeedle() {
+        var e = assertThrows(AssertionError.class, () ->
+                Kontrakt.expectBodyContains(response("{\"id\": 1}"), "\"id\":1", "\"name\"", "\"email\""));
+
+        assertEquals("expected body to contain \"name\" but was {\"id\":1}", e.getMessage());
+    }
+
+    @Test
+    void aLargeBodyIsCutShortInTheFailure() {
+        String body = "{\"items\": [" + "\"x\",".repeat(100_000) + "\"y\"]}";
+
+        var e = assertThrows(AssertionError.class, () ->
+                Kontrakt.expectBodyContains(response(body), "\"missing\""));
+
+        String flat = body.replace(" ", "");
+        assertTrue(e.getMessage().length() < 1200, e.getMessage().length() + " chars");
+        assertTrue(e.getMessage().endsWith("... (" + flat.length() + " chars)"), e.getMessage());
+        assertTrue(e.getMessage().contains(flat.substring(0, 1000)));
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static HttpResponse<String> response(String body) {
+        return new HttpResponse<>() {
+            public int statusCode() { return 200; }
+            public HttpRequest request() { return HttpRequest.newBuilder(URI.create("http://localhost/")).build(); }
+            public Optional<HttpResponse<String>> previousResponse() { return Optional.empty(); }
+            public HttpHeaders headers() { return HttpHeaders.of(Map.of(), (name, value) -> true); }
+            public String body() { return body; }
+            public Optional<SSLSession> sslSession() { return Optional.empty(); }
+            public URI uri() { return URI.create("http://localhost/"); }
+            public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+        };
+    }
+}